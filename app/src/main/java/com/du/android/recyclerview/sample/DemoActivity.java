@@ -30,6 +30,8 @@ import android.widget.TextView;
 import com.du.android.recyclerview.RecycleDragDropManager;
 import com.du.android.recyclerview.RecyclerArrayAdapter;
 import com.du.android.recyclerview.SwipeToDismissTouchListener;
+import com.du.android.recyclerview.ViewHolderPreinflater;
+import com.du.android.recyclerview.WarmViewPool;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -61,7 +63,12 @@ public class DemoActivity extends Activity implements ActionMode.Callback {
         public DemoViewHolder(View itemView) {
             super(itemView);
             text = (TextView) itemView.findViewById(R.id.demo_item_text);
-
+            itemView.setOnClickListener(new View.OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    onItemClick(getAdapterPosition());
+                }
+            });
         }
     }
 
@@ -104,8 +111,12 @@ public class DemoActivity extends Activity implements ActionMode.Callback {
         }
 
         this.adapter = new RecyclerViewAdapterImpl(models);
+        recyclerView.setRecycledViewPool(new WarmViewPool());
         recyclerView.setAdapter(adapter);
 
+        // enough rows for a screen and the ones pulled in by the first scroll
+        new ViewHolderPreinflater(recyclerView, adapter).preinflate(0, 12).start();
+
 
 //        swipeToDismissTouchListener = new SwipeToDismissTouchListener(recyclerView, new SwipeToDismissTouchListener.DismissCallbacks() {
 //
@@ -116,10 +127,11 @@ public class DemoActivity extends Activity implements ActionMode.Callback {
 //
 //            @Override
 //            public void onDismiss(RecyclerView view, List<SwipeToDismissTouchListener.PendingDismissData> dismissData) {
+//                adapter.beginBatch();
 //                for (SwipeToDismissTouchListener.PendingDismissData data : dismissData) {
 //                    adapter.removeItem(data.position);
-//                    adapter.notifyItemRemoved(data.position);
 //                }
+//                adapter.commit();
 //            }
 //        });
 //
@@ -131,6 +143,20 @@ public class DemoActivity extends Activity implements ActionMode.Callback {
         recyclerView.addOnItemTouchListener(dragDropManager);
     }
 
+    private void onItemClick(int position) {
+        if (position == RecyclerView.NO_POSITION) return;
+        adapter.toggleSelection(position);
+        int selected = adapter.getSelectedCount();
+        if (selected == 0) {
+            if (actionMode != null) actionMode.finish();
+            return;
+        }
+        if (actionMode == null) {
+            startActionMode(this);
+        }
+        actionMode.setTitle(String.valueOf(selected));
+    }
+
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.demo, menu);
@@ -151,24 +177,30 @@ public class DemoActivity extends Activity implements ActionMode.Callback {
     @Override
     public boolean onCreateActionMode(ActionMode actionMode, Menu menu) {
         actionMode.getMenuInflater().inflate(R.menu.menu_am, menu);
+        this.actionMode = actionMode;
         return true;
     }
 
     @Override
     public boolean onPrepareActionMode(ActionMode actionMode, Menu menu) {
-        swipeToDismissTouchListener.setEnabled(false);
-        this.actionMode = actionMode;
+        if (swipeToDismissTouchListener != null) swipeToDismissTouchListener.setEnabled(false);
         return false;
     }
 
     @Override
     public boolean onActionItemClicked(ActionMode actionMode, MenuItem menuItem) {
+        if (menuItem.getItemId() == R.id.action_select_all) {
+            adapter.selectAll();
+            actionMode.setTitle(String.valueOf(adapter.getSelectedCount()));
+            return true;
+        }
         return false;
     }
 
     @Override
     public void onDestroyActionMode(ActionMode actionMode) {
-        swipeToDismissTouchListener.setEnabled(true);
+        if (swipeToDismissTouchListener != null) swipeToDismissTouchListener.setEnabled(true);
+        adapter.clearSelection();
         this.actionMode = null;
 
     }
@@ -0,0 +1,80 @@
+package com.du.android.recyclerview;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares ArrayList and ChunkedArrayList on the operations done by RecyclerArrayAdapter: remove,
+ * insert and move by index near the head of the list. Results are logged with the tag below, the
+ * crossover is the size from which ChunkedArrayList is faster for all larger sizes.
+ */
+public class ChunkedArrayListBenchmark extends TestCase {
+
+    private static final String LOG_TAG = "ChunkedBenchmark";
+    private static final int[] SIZES = {100, 250, 500, 1000, 5000, 10000, 20000, 50000, 100000, 200000};
+    private static final int OPERATIONS = 20000;
+    private static final int ROUNDS = 5;
+
+    public void testHeadOperations() {
+        int crossover = -1;
+        for (int size : SIZES) {
+            // best of several rounds, the first ones also warm up the JIT
+            long arrayTime = Long.MAX_VALUE;
+            long chunkedTime = Long.MAX_VALUE;
+            for (int round = 0; round < ROUNDS; round++) {
+                List<Integer> arrayList = fill(new ArrayList<Integer>(), size);
+                List<Integer> chunkedList = fill(new ChunkedArrayList<Integer>(), size);
+                arrayTime = Math.min(arrayTime, run(arrayList, size));
+                chunkedTime = Math.min(chunkedTime, run(chunkedList, size));
+                assertEquals(arrayList, chunkedList);
+            }
+            Log.i(LOG_TAG, String.format("size %7d: ArrayList %6d ns/op, ChunkedArrayList %6d ns/op",
+                    size, arrayTime / OPERATIONS, chunkedTime / OPERATIONS));
+            if (chunkedTime >= arrayTime) {
+                crossover = -1;
+            } else if (crossover == -1) {
+                crossover = size;
+            }
+        }
+        Log.i(LOG_TAG, crossover == -1 ? "No crossover" : "Crossover at " + crossover + " items");
+    }
+
+    private static List<Integer> fill(List<Integer> list, int size) {
+        for (int i = 0; i < size; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+
+    /**
+     * Dismiss, insert and drag within the first tenth of the list, like a user working at the top of
+     * a long feed.
+     *
+     * @return elapsed time in nanoseconds.
+     */
+    private static long run(List<Integer> list, int size) {
+        Random random = new Random(size);
+        int head = Math.max(1, size / 10);
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int position = random.nextInt(head);
+            switch (i % 3) {
+                case 0:
+                    list.add(position, -i);
+                    break;
+                case 1:
+                    list.remove(position);
+                    break;
+                default:
+                    list.add(random.nextInt(head), list.remove(position));
+                    break;
+            }
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,190 @@
+package com.du.android.recyclerview;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Replays a change journal after simulated crashes: a torn append, a corrupted record and an interrupted
+ * compaction. The operations read back must rebuild the same list as the operations recorded.
+ */
+public class FileChangeStoreTest extends TestCase {
+
+    private static final int ITEMS = 20;
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("changes", ".journal");
+        assertTrue(file.delete());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+
+    public void testCoalescing() throws IOException {
+        FileChangeStore store = new FileChangeStore(file);
+        ChangeJournal journal = new ChangeJournal(store, DIRECT);
+        journal.recordMove(1, 0, 3);
+        journal.recordMove(1, 3, 5);
+        journal.recordMove(2, 4, 2);
+        journal.recordDismiss(2, 2);
+        journal.recordMove(3, 1, 2);
+        journal.recordMove(3, 2, 1);
+        assertEquals(Arrays.asList(new ChangeJournal.Operation(ChangeJournal.TYPE_MOVE, 1, 0, 5),
+                new ChangeJournal.Operation(ChangeJournal.TYPE_DISMISS, 2, 4, -1)), store.readAll());
+    }
+
+    public void testReplayAfterTornAppend() throws IOException {
+        Random random = new Random(1);
+        List<Long> expected = newList();
+        ChangeJournal journal = new ChangeJournal(new FileChangeStore(file), DIRECT);
+        recordRandom(journal, expected, random, 100);
+
+        // crash in the middle of the next record
+        appendGarbage(random, 13);
+        FileChangeStore recovered = new FileChangeStore(file);
+        assertEquals(expected, replay(recovered.readAll()));
+
+        // the torn record is overwritten by the next append
+        recordRandom(new ChangeJournal(recovered, DIRECT), expected, random, 50);
+        assertEquals(expected, replay(new FileChangeStore(file).readAll()));
+    }
+
+    public void testReplayDropsCorruptedRecord() throws IOException {
+        Random random = new Random(2);
+        List<Long> expected = newList();
+        recordRandom(new ChangeJournal(new FileChangeStore(file), DIRECT), expected, random, 100);
+
+        // a whole record of garbage fails its checksum
+        appendGarbage(random, 24);
+        assertEquals(expected, replay(new FileChangeStore(file).readAll()));
+    }
+
+    public void testCompaction() throws IOException {
+        Random random = new Random(3);
+        List<Long> expected = newList();
+        FileChangeStore store = new FileChangeStore(file, 16);
+        ChangeJournal journal = new ChangeJournal(store, DIRECT);
+        // an item dragged several times in a row coalesces into one move
+        long id = 0;
+        for (int i = 0; i < 300; i++) {
+            if (i % 10 == 0) {
+                id = expected.get(random.nextInt(ITEMS));
+            }
+            int from = expected.indexOf(id);
+            int to = random.nextInt(expected.size());
+            expected.add(to, expected.remove(from));
+            journal.recordMove(id, from, to);
+        }
+        assertTrue("compacted to " + file.length() + " bytes", file.length() < 100 * 24);
+        assertEquals(expected, replay(store.readAll()));
+
+        // a crash during compaction leaves a partial copy, ignored
+        File compacted = new File(file.getPath() + ".compact");
+        RandomAccessFile output = new RandomAccessFile(compacted, "rw");
+        output.write(new byte[]{1, 2, 3});
+        output.close();
+        assertEquals(expected, replay(new FileChangeStore(file).readAll()));
+        assertFalse(compacted.exists());
+    }
+
+    public void testFailedCompactionKeepsAppends() throws IOException {
+        // a directory in the way of the compacted copy makes every compaction fail
+        File compacted = new File(file.getPath() + ".compact");
+        File blocker = new File(compacted, "blocker");
+        assertTrue(compacted.mkdir());
+        assertTrue(blocker.createNewFile());
+        try {
+            Random random = new Random(4);
+            List<Long> expected = newList();
+            recordRandom(new ChangeJournal(new FileChangeStore(file, 4), DIRECT), expected, random, 40);
+            // each operation written once, not again by the journal after the failed compaction
+            assertEquals(expected, replay(new FileChangeStore(file).readAll()));
+        } finally {
+            blocker.delete();
+            compacted.delete();
+        }
+    }
+
+    public void testDrainAll() throws IOException {
+        Random random = new Random(5);
+        List<Long> expected = newList();
+        FileChangeStore store = new FileChangeStore(file);
+        ChangeJournal journal = new ChangeJournal(store, DIRECT);
+        recordRandom(journal, expected, random, 30);
+        assertEquals(expected, replay(store.drainAll()));
+        assertTrue(store.readAll().isEmpty());
+
+        journal.recordMove(expected.get(0), 0, 1);
+        assertEquals(1, store.drainAll().size());
+    }
+
+    private static List<Long> newList() {
+        List<Long> list = new ArrayList<Long>();
+        for (long id = 0; id < ITEMS; id++) {
+            list.add(id);
+        }
+        return list;
+    }
+
+    /**
+     * Record random moves and dismissals, applying them to the list.
+     */
+    private static void recordRandom(ChangeJournal journal, List<Long> list, Random random, int count) {
+        for (int i = 0; i < count && !list.isEmpty(); i++) {
+            int from = random.nextInt(list.size());
+            long id = list.get(from);
+            if (random.nextInt(10) == 0) {
+                list.remove(from);
+                journal.recordDismiss(id, from);
+            } else {
+                int to = random.nextInt(list.size());
+                list.add(to, list.remove(from));
+                journal.recordMove(id, from, to);
+            }
+        }
+    }
+
+    /**
+     * @return the list rebuilt from the operations, checking they are consistent with it.
+     */
+    private static List<Long> replay(List<ChangeJournal.Operation> operations) {
+        List<Long> list = newList();
+        for (ChangeJournal.Operation operation : operations) {
+            assertEquals(operation.toString(), operation.id, (long) list.get(operation.from));
+            Long id = list.remove(operation.from);
+            if (operation.type == ChangeJournal.TYPE_MOVE) {
+                list.add(operation.to, id);
+            }
+        }
+        return list;
+    }
+
+    private void appendGarbage(Random random, int length) throws IOException {
+        byte[] garbage = new byte[length];
+        random.nextBytes(garbage);
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        output.seek(output.length());
+        output.write(garbage);
+        output.close();
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Threads shared by the adapters of this library: a single low priority worker for the heavy
+ * computations and a handler to get the results back to the main thread.
+ */
+final class AdapterExecutors {
+
+    private static Executor background;
+    private static Handler mainThread;
+
+    private AdapterExecutors() {
+    }
+
+    static synchronized Executor background() {
+        if (background == null) {
+            background = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            runnable.run();
+                        }
+                    }, "RecyclerArrayAdapter-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return background;
+    }
+
+    static synchronized Handler mainThread() {
+        if (mainThread == null) {
+            mainThread = new Handler(Looper.getMainLooper());
+        }
+        return mainThread;
+    }
+}
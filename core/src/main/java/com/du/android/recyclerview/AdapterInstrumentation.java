@@ -0,0 +1,215 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.support.v4.os.TraceCompat;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Times onCreateViewHolder and onBindViewHolder of a {@link RecyclerArrayAdapter}, per view type.
+ * <p/>
+ * Durations go into fixed bucket histograms allocated for up to {@link #MAX_VIEW_TYPES} view types, further
+ * view types share one extra histogram. Recording does not allocate, so instrumentation can stay enabled
+ * in production builds; when it is not attached the adapter only checks a null field.
+ * <p/>
+ * onCreateViewHolder can not be wrapped, it is timed from the {@link WarmViewPool} miss that leads to it
+ * to the first bind that follows, so the RecyclerView must use a WarmViewPool installed by the app.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * recyclerView.setRecycledViewPool(new WarmViewPool());
+ * ...
+ * instrumentation = new AdapterInstrumentation();
+ * instrumentation.attach(recyclerView);
+ * ...
+ * AdapterInstrumentation.Snapshot bind = instrumentation.getBindSnapshot(TYPE_MESSAGE);
+ * Log.i(TAG, "bind p95 " + bind.p95Nanos / 1000 + " us over " + bind.count + " binds");
+ * }
+ * </pre>
+ * All methods must be called on the main thread.
+ */
+public final class AdapterInstrumentation {
+
+    public static final int MAX_VIEW_TYPES = 32;
+
+    private static final String TRACE_BIND = "RecyclerArrayAdapter bind";
+
+    /**
+     * Slot of the view types that did not get their own.
+     */
+    private static final int OTHER_SLOT = MAX_VIEW_TYPES;
+
+    private final int[] slotViewTypes = new int[MAX_VIEW_TYPES];
+    private int slotCount;
+
+    private final LatencyHistogram createTimes = new LatencyHistogram(MAX_VIEW_TYPES + 1);
+    private final LatencyHistogram bindTimes = new LatencyHistogram(MAX_VIEW_TYPES + 1);
+
+    /**
+     * Time of the pool miss per slot, while the holder is being created.
+     */
+    private final long[] missTimes = new long[MAX_VIEW_TYPES + 1];
+    private final boolean[] creating = new boolean[MAX_VIEW_TYPES + 1];
+
+    private boolean traceEnabled;
+    private RecyclerArrayAdapter<?, ?> adapter;
+    private WarmViewPool pool;
+
+    /**
+     * Durations of one view type, in nanoseconds. Percentiles are bucket upper bounds, within 25% of the
+     * exact value.
+     */
+    public static final class Snapshot {
+        public final int viewType;
+        public final long count;
+        public final long p50Nanos;
+        public final long p95Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+
+        Snapshot(int viewType, LatencyHistogram histogram, int slot) {
+            this.viewType = viewType;
+            this.count = histogram.count(slot);
+            this.p50Nanos = histogram.percentile(slot, 0.50);
+            this.p95Nanos = histogram.percentile(slot, 0.95);
+            this.p99Nanos = histogram.percentile(slot, 0.99);
+            this.maxNanos = histogram.max(slot);
+        }
+    }
+
+    /**
+     * Start timing the adapter of the given RecyclerView, which must be a {@link RecyclerArrayAdapter}.
+     *
+     * @param recyclerView instrumented list.
+     * @throws IllegalStateException if the pool of the RecyclerView is not a {@link WarmViewPool}.
+     */
+    public void attach(RecyclerView recyclerView) {
+        detach();
+        RecyclerView.Adapter<?> recyclerAdapter = recyclerView.getAdapter();
+        if (!(recyclerAdapter instanceof RecyclerArrayAdapter)) {
+            throw new IllegalArgumentException("RecyclerView adapter must be a RecyclerArrayAdapter");
+        }
+        pool = WarmViewPool.of(recyclerView);
+        pool.instrumentation = this;
+        adapter = (RecyclerArrayAdapter<?, ?>) recyclerAdapter;
+        adapter.instrumentation = this;
+    }
+
+    /**
+     * Stop timing, recorded durations are kept.
+     */
+    public void detach() {
+        if (adapter != null) {
+            adapter.instrumentation = null;
+            pool.instrumentation = null;
+            adapter = null;
+            pool = null;
+        }
+    }
+
+    /**
+     * Wrap binds in {@link TraceCompat} sections, visible in systrace.
+     *
+     * @param traceEnabled true to add trace sections.
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        this.traceEnabled = traceEnabled;
+    }
+
+    /**
+     * @return view types recorded so far, the ones beyond {@link #MAX_VIEW_TYPES} are not listed.
+     */
+    public int[] getViewTypes() {
+        int[] viewTypes = new int[slotCount];
+        System.arraycopy(slotViewTypes, 0, viewTypes, 0, slotCount);
+        return viewTypes;
+    }
+
+    /**
+     * @param viewType view type.
+     * @return onCreateViewHolder durations of the view type.
+     */
+    public Snapshot getCreateSnapshot(int viewType) {
+        return new Snapshot(viewType, createTimes, findSlot(viewType));
+    }
+
+    /**
+     * @param viewType view type.
+     * @return onBindViewHolder durations of the view type.
+     */
+    public Snapshot getBindSnapshot(int viewType) {
+        return new Snapshot(viewType, bindTimes, findSlot(viewType));
+    }
+
+    /**
+     * Forget all recorded durations.
+     */
+    public void reset() {
+        createTimes.clear();
+        bindTimes.clear();
+        slotCount = 0;
+    }
+
+    void onPoolMiss(int viewType) {
+        int slot = slotOf(viewType);
+        missTimes[slot] = System.nanoTime();
+        creating[slot] = true;
+    }
+
+    /**
+     * @return start time to pass to {@link #endBind(int, long)}.
+     */
+    long beginBind(int viewType) {
+        long now = System.nanoTime();
+        int slot = slotOf(viewType);
+        if (creating[slot]) {
+            // RecyclerView binds a new holder right after creating it
+            createTimes.record(slot, now - missTimes[slot]);
+            creating[slot] = false;
+        }
+        if (traceEnabled) {
+            TraceCompat.beginSection(TRACE_BIND);
+        }
+        return now;
+    }
+
+    void endBind(int viewType, long start) {
+        if (traceEnabled) {
+            TraceCompat.endSection();
+        }
+        bindTimes.record(slotOf(viewType), System.nanoTime() - start);
+    }
+
+    /**
+     * @return slot of the view type, assigned on first use.
+     */
+    private int slotOf(int viewType) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotViewTypes[slot] == viewType) return slot;
+        }
+        if (slotCount == MAX_VIEW_TYPES) return OTHER_SLOT;
+        slotViewTypes[slotCount] = viewType;
+        return slotCount++;
+    }
+
+    private int findSlot(int viewType) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (slotViewTypes[slot] == viewType) return slot;
+        }
+        return OTHER_SLOT;
+    }
+}
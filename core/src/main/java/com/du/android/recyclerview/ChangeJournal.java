@@ -0,0 +1,224 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Persists the results of drag and drop and swipe to dismiss off the main thread. Operations are queued
+ * on the main thread and handed in order to a {@link Store} on a background executor, so a slow database
+ * or disk never blocks a gesture.
+ * <p/>
+ * Redundant operations are coalesced while they wait: moving an item from A to B then from B to C is
+ * written as a single move from A to C, and dismissing an item right after moving it is written as a
+ * dismissal from where it was. Positions are backing list positions at the time of the operation, which
+ * differ from the shown ones while a filter is applied, the id is the stable id of the item.
+ * <p/>
+ * A failed write is logged and retried with the next operations.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * store = new FileChangeStore(new File(getFilesDir(), "changes.journal"));
+ * journal = new ChangeJournal(store);
+ * dragDropTouchListener.setChangeJournal(journal);
+ * swipeToDismissTouchListener.setChangeJournal(journal);
+ * ...
+ * // on a background thread, at startup or when the database is synced
+ * for (ChangeJournal.Operation operation : store.drainAll()) {
+ *     database.apply(operation);
+ * }
+ * }
+ * </pre>
+ */
+public final class ChangeJournal {
+
+    public static final int TYPE_MOVE = 0;
+    public static final int TYPE_DISMISS = 1;
+
+    private static final String LOG_TAG = "ChangeJournal";
+
+    /**
+     * Where operations are written, for eg. {@link FileChangeStore} or a database.
+     */
+    public interface Store {
+
+        /**
+         * Write operations after the ones written before. Called on the executor of the journal, one call
+         * at a time.
+         *
+         * @param operations coalesced operations, in order.
+         * @throws IOException if the operations were not written; they are given again with the next ones.
+         */
+        void append(List<Operation> operations) throws IOException;
+    }
+
+    /**
+     * A move of an item, or its dismissal.
+     */
+    public static final class Operation {
+
+        /**
+         * {@link #TYPE_MOVE} or {@link #TYPE_DISMISS}.
+         */
+        public final int type;
+        public final long id;
+
+        /**
+         * Position of the item before the operation.
+         */
+        public final int from;
+
+        /**
+         * Position of the item after a move, -1 for a dismissal.
+         */
+        public final int to;
+
+        Operation(int type, long id, int from, int to) {
+            this.type = type;
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Operation)) return false;
+            Operation other = (Operation) o;
+            return type == other.type && id == other.id && from == other.from && to == other.to;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = type;
+            result = 31 * result + (int) (id ^ (id >>> 32));
+            result = 31 * result + from;
+            return 31 * result + to;
+        }
+
+        @Override
+        public String toString() {
+            return type == TYPE_MOVE ? "move " + id + " " + from + "->" + to : "dismiss " + id + " at " + from;
+        }
+    }
+
+    private final Store store;
+    private final Executor executor;
+
+    private final Object lock = new Object();
+
+    /**
+     * Operations not handed to the store yet, guarded by lock.
+     */
+    private List<Operation> pending = new ArrayList<Operation>();
+    private boolean draining;
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                List<Operation> batch;
+                synchronized (lock) {
+                    if (pending.isEmpty()) {
+                        draining = false;
+                        return;
+                    }
+                    batch = pending;
+                    pending = new ArrayList<Operation>();
+                }
+                try {
+                    store.append(batch);
+                } catch (IOException e) {
+                    Log.w(LOG_TAG, "Failed to write " + batch.size() + " operations, retrying with the next ones", e);
+                    synchronized (lock) {
+                        for (Operation operation : pending) {
+                            coalesce(batch, operation);
+                        }
+                        pending = batch;
+                        draining = false;
+                    }
+                    return;
+                }
+            }
+        }
+    };
+
+    /**
+     * Journal writing on the worker thread shared by the adapters.
+     *
+     * @param store where operations are written.
+     */
+    public ChangeJournal(Store store) {
+        this(store, AdapterExecutors.background());
+    }
+
+    /**
+     * @param store    where operations are written.
+     * @param executor runs the writes, must not run them on the main thread.
+     */
+    public ChangeJournal(Store store, Executor executor) {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    /**
+     * @param id   stable id of the item.
+     * @param from position before the move.
+     * @param to   position after the move.
+     */
+    public void recordMove(long id, int from, int to) {
+        record(new Operation(TYPE_MOVE, id, from, to));
+    }
+
+    /**
+     * @param id       stable id of the item.
+     * @param position position of the item when dismissed.
+     */
+    public void recordDismiss(long id, int position) {
+        record(new Operation(TYPE_DISMISS, id, position, -1));
+    }
+
+    private void record(Operation operation) {
+        synchronized (lock) {
+            coalesce(pending, operation);
+            if (draining || pending.isEmpty()) return;
+            draining = true;
+        }
+        executor.execute(drain);
+    }
+
+    /**
+     * Append an operation to a list in order, merging it with the moves of the same item it follows.
+     */
+    static void coalesce(List<Operation> operations, Operation operation) {
+        while (!operations.isEmpty()) {
+            Operation last = operations.get(operations.size() - 1);
+            if (last.type != TYPE_MOVE || last.id != operation.id || last.to != operation.from) break;
+            operations.remove(operations.size() - 1);
+            // moved or dismissed from where the previous move took it
+            operation = new Operation(operation.type, operation.id, last.from, operation.to);
+        }
+        if (operation.type == TYPE_MOVE && operation.from == operation.to) return;
+        operations.add(operation);
+    }
+}
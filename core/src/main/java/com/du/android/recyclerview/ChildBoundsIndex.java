@@ -0,0 +1,206 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import java.util.Arrays;
+
+/**
+ * Spatial index of the laid out bounds of the children of a RecyclerView, for hit testing in two
+ * dimensions. The bounds are bucketed in a uniform grid of cells the average size of a child, so a point
+ * is tested against the few children overlapping its cell.
+ * <p/>
+ * The index is rebuilt when invalidated, which its owner does on layout and scroll. A hit on a child
+ * laid out elsewhere since the last build also triggers a rebuild, for layouts no listener saw.
+ */
+final class ChildBoundsIndex {
+
+    private View[] children = new View[0];
+    private int[] lefts = new int[0];
+    private int[] tops = new int[0];
+    private int[] rights = new int[0];
+    private int[] bottoms = new int[0];
+    private int count;
+
+    private int cellWidth;
+    private int cellHeight;
+    private int columns;
+    private int rows;
+
+    /**
+     * Children of cell i are cellEntries[cellStarts[i]] to cellEntries[cellStarts[i + 1] - 1].
+     */
+    private int[] cellStarts = new int[1];
+    private int[] cellEntries = new int[0];
+
+    private boolean dirty = true;
+
+    void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Drop the references to the children, the index is rebuilt on next use.
+     */
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            children[i] = null;
+        }
+        count = 0;
+        dirty = true;
+    }
+
+    /**
+     * @return child whose laid out bounds, decorations included, contain the point; null if none does.
+     */
+    View findChildAt(RecyclerView recyclerView, float x, float y) {
+        if (dirty) {
+            rebuild(recyclerView);
+        }
+        int child = hitTest(x, y);
+        if (child != -1 && !isLaidOutAsIndexed(recyclerView, child)) {
+            rebuild(recyclerView);
+            child = hitTest(x, y);
+        }
+        return child == -1 ? null : children[child];
+    }
+
+    private int hitTest(float x, float y) {
+        if (count == 0) return -1;
+        int cell = cellOf(x, y);
+        for (int i = cellStarts[cell], end = cellStarts[cell + 1]; i < end; i++) {
+            int child = cellEntries[i];
+            if (x >= lefts[child] && x < rights[child] && y >= tops[child] && y < bottoms[child]) {
+                return child;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isLaidOutAsIndexed(RecyclerView recyclerView, int child) {
+        View view = children[child];
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        return view.getParent() == recyclerView
+                && layoutManager.getDecoratedLeft(view) == lefts[child]
+                && layoutManager.getDecoratedTop(view) == tops[child]
+                && layoutManager.getDecoratedRight(view) == rights[child]
+                && layoutManager.getDecoratedBottom(view) == bottoms[child];
+    }
+
+    private void rebuild(RecyclerView recyclerView) {
+        clear();
+        dirty = false;
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        int childCount = recyclerView.getChildCount();
+        if (layoutManager == null || childCount == 0) return;
+        ensureCapacity(childCount);
+
+        long totalWidth = 0;
+        long totalHeight = 0;
+        for (int i = 0; i < childCount; i++) {
+            View view = recyclerView.getChildAt(i);
+            int left = layoutManager.getDecoratedLeft(view);
+            int top = layoutManager.getDecoratedTop(view);
+            int right = layoutManager.getDecoratedRight(view);
+            int bottom = layoutManager.getDecoratedBottom(view);
+            if (right <= left || bottom <= top) continue;
+            children[count] = view;
+            lefts[count] = left;
+            tops[count] = top;
+            rights[count] = right;
+            bottoms[count] = bottom;
+            totalWidth += right - left;
+            totalHeight += bottom - top;
+            count++;
+        }
+        if (count == 0) return;
+
+        // cells the average child size hold about one child each
+        cellWidth = (int) Math.max(1, totalWidth / count);
+        cellHeight = (int) Math.max(1, totalHeight / count);
+        columns = Math.max(1, (recyclerView.getWidth() + cellWidth - 1) / cellWidth);
+        rows = Math.max(1, (recyclerView.getHeight() + cellHeight - 1) / cellHeight);
+        int cells = columns * rows;
+        if (cellStarts.length < cells + 1) {
+            cellStarts = new int[cells + 1];
+        }
+
+        // counting pass, then prefix sums, then a placing pass that leaves each start at its cell end
+        Arrays.fill(cellStarts, 0, cells + 1, 0);
+        int entries = 0;
+        for (int child = 0; child < count; child++) {
+            int firstColumn = column(lefts[child]);
+            int lastColumn = column(rights[child] - 1);
+            int firstRow = row(tops[child]);
+            int lastRow = row(bottoms[child] - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    cellStarts[row * columns + column + 1]++;
+                    entries++;
+                }
+            }
+        }
+        for (int cell = 0; cell < cells; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+        if (cellEntries.length < entries) {
+            cellEntries = new int[entries];
+        }
+        for (int child = 0; child < count; child++) {
+            int firstColumn = column(lefts[child]);
+            int lastColumn = column(rights[child] - 1);
+            int firstRow = row(tops[child]);
+            int lastRow = row(bottoms[child] - 1);
+            for (int row = firstRow; row <= lastRow; row++) {
+                for (int column = firstColumn; column <= lastColumn; column++) {
+                    cellEntries[cellStarts[row * columns + column]++] = child;
+                }
+            }
+        }
+        // shift the starts back
+        for (int cell = cells; cell > 0; cell--) {
+            cellStarts[cell] = cellStarts[cell - 1];
+        }
+        cellStarts[0] = 0;
+    }
+
+    /**
+     * Points and children outside RecyclerView fall in the border cells.
+     */
+    private int cellOf(float x, float y) {
+        return row((int) Math.floor(y)) * columns + column((int) Math.floor(x));
+    }
+
+    private int column(int x) {
+        return Math.min(columns - 1, Math.max(0, x / cellWidth));
+    }
+
+    private int row(int y) {
+        return Math.min(rows - 1, Math.max(0, y / cellHeight));
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (children.length >= capacity) return;
+        children = new View[capacity];
+        lefts = new int[capacity];
+        tops = new int[capacity];
+        rights = new int[capacity];
+        bottoms = new int[capacity];
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * List made of chunks of about sqrt(n) items. Insert, remove and move by index shift at most one chunk
+ * and the chunk table, so they cost amortized O(sqrt(n)) instead of the O(n) of ArrayList when they
+ * happen near the head of a large list. Sequential access is O(1).
+ * <p/>
+ * Pass an instance to the {@link RecyclerArrayAdapter} constructor for lists of many thousands of items
+ * edited by index; see ChunkedArrayListBenchmark for the crossover with ArrayList.
+ *
+ * @param <T> Type of the items
+ */
+public class ChunkedArrayList<T> extends AbstractList<T> {
+
+    private static final int MIN_CHUNK_SIZE = 64;
+
+    /**
+     * Items of every chunk, each array has chunkCapacity slots.
+     */
+    private Object[][] chunks;
+    private int[] chunkSizes;
+    private int chunkCount;
+    private int chunkCapacity;
+    private int size;
+
+    /**
+     * Last located chunk and the position of its first item, speeds up sequential access.
+     */
+    private int cachedChunk;
+    private int cachedChunkStart;
+
+    /**
+     * Offset within the chunk found by the last {@link #locate(int)} call.
+     */
+    private int locatedOffset;
+
+    public ChunkedArrayList() {
+        rebuild(new Object[0], 0);
+    }
+
+    public ChunkedArrayList(Collection<? extends T> items) {
+        Object[] array = items.toArray();
+        rebuild(array, array.length);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        checkIndex(index, size);
+        int chunk = locate(index);
+        return (T) chunks[chunk][locatedOffset];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T set(int index, T item) {
+        checkIndex(index, size);
+        int chunk = locate(index);
+        T previous = (T) chunks[chunk][locatedOffset];
+        chunks[chunk][locatedOffset] = item;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T item) {
+        checkIndex(index, size + 1);
+        int chunk;
+        int offset;
+        if (index == size) {
+            chunk = chunkCount - 1;
+            offset = chunkSizes[chunk];
+        } else {
+            chunk = locate(index);
+            offset = locatedOffset;
+        }
+        if (chunkSizes[chunk] == chunkCapacity) {
+            split(chunk);
+            if (offset > chunkSizes[chunk]) {
+                offset -= chunkSizes[chunk];
+                chunk++;
+            }
+        }
+        Object[] items = chunks[chunk];
+        System.arraycopy(items, offset, items, offset + 1, chunkSizes[chunk] - offset);
+        items[offset] = item;
+        chunkSizes[chunk]++;
+        size++;
+        modCount++;
+        invalidateCache(chunk);
+        if (size > chunkCapacity * chunkCapacity * 4) {
+            rebuild(toArray(), size);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T remove(int index) {
+        checkIndex(index, size);
+        int chunk = locate(index);
+        int offset = locatedOffset;
+        Object[] items = chunks[chunk];
+        T removed = (T) items[offset];
+        int moved = chunkSizes[chunk] - offset - 1;
+        System.arraycopy(items, offset + 1, items, offset, moved);
+        items[--chunkSizes[chunk]] = null;
+        size--;
+        modCount++;
+        invalidateCache(chunk);
+        if (chunkCapacity > MIN_CHUNK_SIZE && size * 16 < chunkCapacity * chunkCapacity) {
+            rebuild(toArray(), size);
+        } else {
+            mergeIfSmall(chunk);
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        rebuild(new Object[0], 0);
+        modCount++;
+    }
+
+    @Override
+    public Object[] toArray() {
+        Object[] array = new Object[size];
+        int position = 0;
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            System.arraycopy(chunks[chunk], 0, array, position, chunkSizes[chunk]);
+            position += chunkSizes[chunk];
+        }
+        return array;
+    }
+
+    /**
+     * Find the chunk holding the given position, the offset within the chunk is stored in
+     * {@link #locatedOffset}.
+     */
+    private int locate(int index) {
+        int chunk = cachedChunk;
+        int start = cachedChunkStart;
+        while (index < start) {
+            chunk--;
+            start -= chunkSizes[chunk];
+        }
+        // also skips empty chunks
+        while (index >= start + chunkSizes[chunk]) {
+            start += chunkSizes[chunk];
+            chunk++;
+        }
+        cachedChunk = chunk;
+        cachedChunkStart = start;
+        locatedOffset = index - start;
+        return chunk;
+    }
+
+    private void invalidateCache(int chunk) {
+        if (cachedChunk > chunk) {
+            cachedChunk = 0;
+            cachedChunkStart = 0;
+        }
+    }
+
+    private void split(int chunk) {
+        ensureChunkSlots(chunkCount + 1);
+        System.arraycopy(chunks, chunk + 1, chunks, chunk + 2, chunkCount - chunk - 1);
+        System.arraycopy(chunkSizes, chunk + 1, chunkSizes, chunk + 2, chunkCount - chunk - 1);
+        chunkCount++;
+
+        int half = chunkSizes[chunk] / 2;
+        int rest = chunkSizes[chunk] - half;
+        Object[] second = new Object[chunkCapacity];
+        System.arraycopy(chunks[chunk], half, second, 0, rest);
+        Arrays.fill(chunks[chunk], half, chunkSizes[chunk], null);
+        chunks[chunk + 1] = second;
+        chunkSizes[chunk] = half;
+        chunkSizes[chunk + 1] = rest;
+        cachedChunk = 0;
+        cachedChunkStart = 0;
+    }
+
+    private void mergeIfSmall(int chunk) {
+        int next = chunk + 1 < chunkCount ? chunk + 1 : chunk - 1;
+        if (next < 0) return;
+        int first = Math.min(chunk, next);
+        int second = first + 1;
+        if (chunkSizes[first] + chunkSizes[second] > chunkCapacity / 2) return;
+
+        System.arraycopy(chunks[second], 0, chunks[first], chunkSizes[first], chunkSizes[second]);
+        chunkSizes[first] += chunkSizes[second];
+        System.arraycopy(chunks, second + 1, chunks, second, chunkCount - second - 1);
+        System.arraycopy(chunkSizes, second + 1, chunkSizes, second, chunkCount - second - 1);
+        chunkCount--;
+        chunks[chunkCount] = null;
+        cachedChunk = 0;
+        cachedChunkStart = 0;
+    }
+
+    /**
+     * Redistribute the items into chunks of the capacity suited to the current size.
+     */
+    private void rebuild(Object[] items, int count) {
+        chunkCapacity = MIN_CHUNK_SIZE;
+        while (chunkCapacity * chunkCapacity < count) {
+            chunkCapacity <<= 1;
+        }
+        int fill = chunkCapacity / 2;
+        chunkCount = Math.max(1, (count + fill - 1) / fill);
+        chunks = new Object[chunkCount * 2][];
+        chunkSizes = new int[chunkCount * 2];
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            int start = chunk * fill;
+            int length = Math.max(0, Math.min(fill, count - start));
+            chunks[chunk] = new Object[chunkCapacity];
+            System.arraycopy(items, start, chunks[chunk], 0, length);
+            chunkSizes[chunk] = length;
+        }
+        size = count;
+        cachedChunk = 0;
+        cachedChunkStart = 0;
+    }
+
+    private void ensureChunkSlots(int count) {
+        if (count <= chunks.length) return;
+        Object[][] newChunks = new Object[count * 2][];
+        System.arraycopy(chunks, 0, newChunks, 0, chunkCount);
+        chunks = newChunks;
+        int[] newSizes = new int[count * 2];
+        System.arraycopy(chunkSizes, 0, newSizes, 0, chunkCount);
+        chunkSizes = newSizes;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + bound);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import java.util.List;
+
+/**
+ * Source of items for {@link PagedRecyclerArrayAdapter}, for eg. a database table.
+ * <p/>
+ * Both methods are called on a background thread.
+ *
+ * @param <T> Type of the class in the adapter
+ */
+public interface DataSource<T> {
+
+    /**
+     * @return total number of items.
+     */
+    int getCount();
+
+    /**
+     * Load a range of items.
+     *
+     * @param start position of the first item.
+     * @param count number of items to load.
+     * @return loaded items, count of them unless the source has changed.
+     */
+    List<T> loadRange(int start, int count);
+}
@@ -0,0 +1,45 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+/**
+ * Callback used by {@link RecyclerArrayAdapter#submitList(java.util.List)} to compare the current list
+ * with the submitted one.
+ * <p/>
+ * Both methods are called on a background thread.
+ *
+ * @param <T> Type of the class in the adapter
+ */
+public abstract class DiffCallback<T> {
+
+    /**
+     * @param oldItem item from the current list.
+     * @param newItem item from the submitted list.
+     * @return true if both items represent the same entity, for eg. have the same id.
+     */
+    public abstract boolean areItemsTheSame(T oldItem, T newItem);
+
+    /**
+     * Called only for items that are the same entity, to decide whether the item must be rebound.
+     *
+     * @param oldItem item from the current list.
+     * @param newItem item from the submitted list.
+     * @return true if the visible content of the item did not change.
+     */
+    public boolean areContentsTheSame(T oldItem, T newItem) {
+        return oldItem == null ? newItem == null : oldItem.equals(newItem);
+    }
+}
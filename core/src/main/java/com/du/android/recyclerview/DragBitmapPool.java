@@ -0,0 +1,180 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pool of the bitmaps used as drag thumbnails by {@link RecycleDragDropManager}, so starting a drag does
+ * not allocate a bitmap as large as the dragged item.
+ * <p/>
+ * A pooled bitmap is reused if it can hold the requested size: from KitKat on any bitmap with a large
+ * enough allocation is reconfigured, before only a bitmap of the same size is reused.
+ * <p/>
+ * The pixel format and a downscale factor are configurable: ARGB_8888 keeps the translucency of cards
+ * with rounded corners or shadows, RGB_565 takes half the memory, and a scale below 1 keeps the
+ * thumbnail of large items small. The thumbnail is drawn scaled up to the size of the item.
+ * <p/>
+ * All methods must be called on the main thread.
+ */
+public class DragBitmapPool {
+
+    /**
+     * Bitmaps kept for reuse, enough for the thumbnails of two item sizes.
+     */
+    private static final int MAX_POOLED_BITMAPS = 2;
+
+    private final Bitmap.Config config;
+    private final float scale;
+
+    private final List<Bitmap> pool = new ArrayList<Bitmap>(MAX_POOLED_BITMAPS);
+
+    private int hits;
+    private int misses;
+
+    /**
+     * Pool of RGB_565 thumbnails at the size of the item.
+     */
+    public DragBitmapPool() {
+        this(Bitmap.Config.RGB_565, 1f);
+    }
+
+    /**
+     * @param config pixel format of thumbnails, ARGB_8888 for translucent items.
+     * @param scale  size of thumbnails relative to the item, in (0, 1].
+     */
+    public DragBitmapPool(Bitmap.Config config, float scale) {
+        if (scale <= 0 || scale > 1) {
+            throw new IllegalArgumentException("Scale must be in (0, 1]: " + scale);
+        }
+        this.config = config;
+        this.scale = scale;
+    }
+
+    /**
+     * Return a cleared bitmap of the given size, reused from the pool if possible.
+     *
+     * @param width  bitmap width, already scaled.
+     * @param height bitmap height, already scaled.
+     * @return bitmap in the format of this pool.
+     */
+    public Bitmap acquire(int width, int height) {
+        for (int i = pool.size() - 1; i >= 0; i--) {
+            Bitmap bitmap = pool.get(i);
+            if (fits(bitmap, width, height)) {
+                pool.remove(i);
+                hits++;
+                if (bitmap.getWidth() != width || bitmap.getHeight() != height || bitmap.getConfig() != config) {
+                    reconfigure(bitmap, width, height);
+                }
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        misses++;
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Give back a bitmap returned by {@link #acquire(int, int)}, once nothing draws it anymore.
+     *
+     * @param bitmap bitmap to reuse.
+     */
+    public void release(Bitmap bitmap) {
+        if (bitmap.isRecycled()) return;
+        if (pool.size() == MAX_POOLED_BITMAPS) {
+            pool.remove(0).recycle();
+        }
+        pool.add(bitmap);
+    }
+
+    /**
+     * Recycle the pooled bitmaps, for eg. from onTrimMemory(). Called by {@link RecycleDragDropManager}
+     * when its RecyclerView is detached from the window.
+     */
+    public void clear() {
+        for (Bitmap bitmap : pool) {
+            bitmap.recycle();
+        }
+        pool.clear();
+    }
+
+    /**
+     * @return pixel format of thumbnails.
+     */
+    public Bitmap.Config getConfig() {
+        return config;
+    }
+
+    /**
+     * @return size of thumbnails relative to the item.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * @return number of thumbnails served from the pool.
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of thumbnails allocated because no pooled bitmap fit.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Reset hit and miss counters.
+     */
+    public void resetStats() {
+        hits = 0;
+        misses = 0;
+    }
+
+    private boolean fits(Bitmap bitmap, int width, int height) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.isMutable() && bitmap.getAllocationByteCount() >= width * height * bytesPerPixel(config);
+        }
+        return bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private void reconfigure(Bitmap bitmap, int width, int height) {
+        bitmap.reconfigure(width, height, config);
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ARGB_8888:
+                return 4;
+            case ALPHA_8:
+                return 1;
+            default:
+                return 2;
+        }
+    }
+}
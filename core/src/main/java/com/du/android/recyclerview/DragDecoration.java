@@ -0,0 +1,100 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+/**
+ * Draws the dragged item of {@link RecycleDragDropManager} over the items of RecyclerView, either a
+ * thumbnail or the live item view translated to the drag position. Moving it only needs a redraw of
+ * RecyclerView, no measure or layout.
+ */
+final class DragDecoration extends RecyclerView.ItemDecoration {
+
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final RectF bounds = new RectF();
+
+    private Bitmap thumbnail;
+    private View liveView;
+    private Drawable highlight;
+    private int width;
+    private int height;
+    private float x;
+    private float y;
+
+    /**
+     * Draw a thumbnail, scaled to the given size.
+     */
+    void showThumbnail(Bitmap thumbnail, int width, int height) {
+        this.thumbnail = thumbnail;
+        this.liveView = null;
+        this.highlight = null;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Draw the view itself, with the highlight over it.
+     */
+    void showLiveView(View liveView, Drawable highlight) {
+        this.thumbnail = null;
+        this.liveView = liveView;
+        this.highlight = highlight;
+        this.width = liveView.getWidth();
+        this.height = liveView.getHeight();
+    }
+
+    void hide() {
+        thumbnail = null;
+        liveView = null;
+        highlight = null;
+    }
+
+    /**
+     * @param x left of the dragged item in RecyclerView.
+     * @param y top of the dragged item in RecyclerView.
+     */
+    void setPosition(float x, float y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public void onDrawOver(Canvas canvas, RecyclerView parent, RecyclerView.State state) {
+        if (thumbnail == null && liveView == null) return;
+        int saveCount = canvas.save();
+        canvas.translate(x, y);
+        if (liveView != null) {
+            // draw() ignores the visibility, the item stays hidden in its slot
+            liveView.draw(canvas);
+            if (highlight != null) {
+                highlight.setBounds(0, 0, width, height);
+                highlight.draw(canvas);
+            }
+        } else {
+            bounds.set(0, 0, width, height);
+            canvas.drawBitmap(thumbnail, null, bounds, paint);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * {@link ChangeJournal.Store} writing operations to an append-only file. Each operation is a fixed size
+ * record with a checksum, and every append is synced to disk before it returns.
+ * <p/>
+ * A crash during an append leaves at most a torn record at the end of the file: reading stops at the first
+ * record that is incomplete or fails its checksum, and the next append overwrites it.
+ * <p/>
+ * The file is compacted every {@link #DEFAULT_COMPACT_INTERVAL} appended operations: its operations are
+ * coalesced and written to a new file, which then replaces it, so a crash during compaction leaves the
+ * journal as it was. A failed compaction is retried with the next append.
+ * <p/>
+ * Methods may be called from any thread, they do disk IO.
+ */
+public final class FileChangeStore implements ChangeJournal.Store {
+
+    public static final int DEFAULT_COMPACT_INTERVAL = 1024;
+
+    private static final String LOG_TAG = "FileChangeStore";
+
+    private static final int MAGIC = 0x434a4e31;
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * type, id, from, to and checksum.
+     */
+    private static final int RECORD_SIZE = 4 + 8 + 4 + 4 + 4;
+    private static final String COMPACT_SUFFIX = ".compact";
+
+    private final File file;
+    private final int compactInterval;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Length of the valid part of the file, -1 until the file is checked.
+     */
+    private long validLength = -1;
+    private int appendedSinceCompaction;
+
+    /**
+     * @param file journal file, created on first append.
+     */
+    public FileChangeStore(File file) {
+        this(file, DEFAULT_COMPACT_INTERVAL);
+    }
+
+    /**
+     * @param file            journal file, created on first append.
+     * @param compactInterval number of appended operations between compactions.
+     */
+    public FileChangeStore(File file, int compactInterval) {
+        this.file = file;
+        this.compactInterval = compactInterval;
+    }
+
+    @Override
+    public synchronized void append(List<ChangeJournal.Operation> operations) throws IOException {
+        if (operations.isEmpty()) return;
+        recover();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + operations.size() * RECORD_SIZE);
+        if (validLength == 0) {
+            putHeader(buffer);
+        }
+        for (ChangeJournal.Operation operation : operations) {
+            putRecord(buffer, operation);
+        }
+        buffer.flip();
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = output.getChannel();
+            // overwrites a torn record left by a crash
+            channel.position(validLength);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.truncate(channel.position());
+            channel.force(false);
+            validLength = channel.position();
+        } finally {
+            output.close();
+        }
+        appendedSinceCompaction += operations.size();
+        if (appendedSinceCompaction >= compactInterval) {
+            try {
+                compact();
+            } catch (IOException e) {
+                // the operations are written, failing would have them appended again
+                Log.w(LOG_TAG, "Compaction failed, retried with the next append", e);
+            }
+        }
+    }
+
+    /**
+     * @return the operations written, coalesced, in order.
+     * @throws IOException if the file can not be read.
+     */
+    public synchronized List<ChangeJournal.Operation> readAll() throws IOException {
+        recover();
+        if (validLength == 0) return Collections.emptyList();
+        ByteBuffer buffer = readValid();
+        List<ChangeJournal.Operation> operations = new ArrayList<ChangeJournal.Operation>();
+        buffer.position(HEADER_SIZE);
+        while (buffer.remaining() >= RECORD_SIZE) {
+            ChangeJournal.coalesce(operations, getRecord(buffer));
+        }
+        return operations;
+    }
+
+    /**
+     * Rewrite the file with its operations coalesced.
+     *
+     * @throws IOException if the file can not be rewritten, it is left as it was.
+     */
+    public synchronized void compact() throws IOException {
+        List<ChangeJournal.Operation> operations = readAll();
+        File compacted = new File(file.getPath() + COMPACT_SUFFIX);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + operations.size() * RECORD_SIZE);
+        putHeader(buffer);
+        for (ChangeJournal.Operation operation : operations) {
+            putRecord(buffer, operation);
+        }
+        buffer.flip();
+        RandomAccessFile output = new RandomAccessFile(compacted, "rw");
+        try {
+            FileChannel channel = output.getChannel();
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } finally {
+            output.close();
+        }
+        if (!compacted.renameTo(file)) {
+            throw new IOException("Failed to replace " + file + " with its compacted copy");
+        }
+        validLength = HEADER_SIZE + (long) operations.size() * RECORD_SIZE;
+        appendedSinceCompaction = 0;
+    }
+
+    /**
+     * Read all operations and delete them at once, for eg. to apply them to a database. No operation
+     * appended meanwhile is lost, unlike with {@link #readAll()} then {@link #clear()}. The operations
+     * are only in the returned list afterwards.
+     *
+     * @return the operations written, coalesced, in order.
+     * @throws IOException if the file can not be read, it is left as it was.
+     */
+    public synchronized List<ChangeJournal.Operation> drainAll() throws IOException {
+        List<ChangeJournal.Operation> operations = readAll();
+        clear();
+        return operations;
+    }
+
+    /**
+     * Delete all operations, including those appended since the last {@link #readAll()}, see
+     * {@link #drainAll()}.
+     */
+    public synchronized void clear() {
+        if (file.exists() && !file.delete()) {
+            Log.w(LOG_TAG, "Failed to delete " + file);
+        }
+        validLength = 0;
+        appendedSinceCompaction = 0;
+    }
+
+    /**
+     * Find the valid part of the file once, dropping what an interrupted compaction left.
+     */
+    private void recover() throws IOException {
+        if (validLength != -1) return;
+        File compacted = new File(file.getPath() + COMPACT_SUFFIX);
+        if (compacted.exists() && !compacted.delete()) {
+            Log.w(LOG_TAG, "Failed to delete " + compacted);
+        }
+        if (!file.exists()) {
+            validLength = 0;
+            return;
+        }
+        validLength = file.length();
+        if (validLength < HEADER_SIZE) {
+            // torn header, the first append rewrites it
+            validLength = 0;
+            return;
+        }
+        ByteBuffer buffer = readValid();
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a change journal");
+        }
+        int length = HEADER_SIZE;
+        buffer.position(HEADER_SIZE);
+        while (buffer.remaining() >= RECORD_SIZE && checksumMatches(buffer)) {
+            buffer.position(buffer.position() + RECORD_SIZE);
+            length += RECORD_SIZE;
+        }
+        if (length != validLength) {
+            Log.w(LOG_TAG, "Dropping " + (validLength - length) + " bytes of a torn write at the end of " + file);
+        }
+        validLength = length;
+    }
+
+    private ByteBuffer readValid() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) validLength);
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = input.getChannel();
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // keep reading
+            }
+        } finally {
+            input.close();
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void putHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putInt(RECORD_SIZE);
+    }
+
+    private void putRecord(ByteBuffer buffer, ChangeJournal.Operation operation) {
+        int start = buffer.position();
+        buffer.putInt(operation.type);
+        buffer.putLong(operation.id);
+        buffer.putInt(operation.from);
+        buffer.putInt(operation.to);
+        buffer.putInt(checksum(buffer, start));
+    }
+
+    private static ChangeJournal.Operation getRecord(ByteBuffer buffer) {
+        int type = buffer.getInt();
+        long id = buffer.getLong();
+        int from = buffer.getInt();
+        int to = buffer.getInt();
+        buffer.getInt();
+        return new ChangeJournal.Operation(type, id, from, to);
+    }
+
+    /**
+     * @return true if the record at the position of the buffer is intact, the position is not changed.
+     */
+    private boolean checksumMatches(ByteBuffer buffer) {
+        int start = buffer.position();
+        return buffer.getInt(start + RECORD_SIZE - 4) == checksum(buffer, start);
+    }
+
+    private int checksum(ByteBuffer buffer, int start) {
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset() + start, RECORD_SIZE - 4);
+        return (int) crc.getValue();
+    }
+}
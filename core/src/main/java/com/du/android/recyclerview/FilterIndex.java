@@ -0,0 +1,200 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+/**
+ * Positions in the backing list of the items shown by a filtered adapter, in ascending order. Edits made
+ * through the adapter update the index, so shown positions keep mapping to the right items.
+ */
+final class FilterIndex {
+
+    private int[] positions;
+    private int size;
+
+    /**
+     * @param positions ascending positions in the backing list, the index takes ownership of the array.
+     * @param size      number of used entries.
+     */
+    FilterIndex(int[] positions, int size) {
+        this.positions = positions;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param position shown position.
+     * @return position in the backing list.
+     */
+    int get(int position) {
+        checkIndex(position, size);
+        return positions[position];
+    }
+
+    /**
+     * @return copy of the used entries.
+     */
+    int[] toArray() {
+        int[] copy = new int[size];
+        System.arraycopy(positions, 0, copy, 0, size);
+        return copy;
+    }
+
+    /**
+     * Record that count items were inserted into the backing list at sourcePosition, shown from position.
+     */
+    void insert(int position, int sourcePosition, int count) {
+        checkIndex(position, size + 1);
+        if (size + count > positions.length) {
+            int[] grown = new int[Math.max(size + count, positions.length * 2)];
+            System.arraycopy(positions, 0, grown, 0, size);
+            positions = grown;
+        }
+        System.arraycopy(positions, position, positions, position + count, size - position);
+        for (int i = 0; i < count; i++) {
+            positions[position + i] = sourcePosition + i;
+        }
+        size += count;
+        for (int i = position + count; i < size; i++) {
+            positions[i] += count;
+        }
+    }
+
+    /**
+     * Record that the items shown at the given range were removed from the backing list.
+     */
+    void remove(int position, int count) {
+        if (count <= 0) return;
+        checkIndex(position + count - 1, size);
+        System.arraycopy(positions, position + count, positions, position, size - position - count);
+        size -= count;
+        for (int i = position; i < size; i++) {
+            positions[i] -= count;
+        }
+    }
+
+    /**
+     * Record that the item shown at from was moved in the backing list to the position of the item
+     * shown at to.
+     */
+    void move(int from, int to) {
+        checkIndex(from, size);
+        checkIndex(to, size);
+        int target = positions[to];
+        if (from < to) {
+            for (int i = from; i < to; i++) {
+                positions[i] = positions[i + 1] - 1;
+            }
+        } else {
+            for (int i = from; i > to; i--) {
+                positions[i] = positions[i - 1] + 1;
+            }
+        }
+        positions[to] = target;
+    }
+
+    /**
+     * Record that the item at sourceFrom in the backing list was moved to sourceTo.
+     *
+     * @return shown position of the item after the move, -1 if the item is not shown.
+     */
+    int moveSource(int sourceFrom, int sourceTo) {
+        int from = lowerBound(sourceFrom);
+        boolean shown = from < size && positions[from] == sourceFrom;
+        if (shown) {
+            System.arraycopy(positions, from + 1, positions, from, size - from - 1);
+            size--;
+        }
+        // shift the items that were between both positions
+        if (sourceFrom < sourceTo) {
+            for (int i = from, end = lowerBound(sourceTo + 1); i < end; i++) {
+                positions[i]--;
+            }
+        } else {
+            for (int i = lowerBound(sourceTo), end = lowerBound(sourceFrom); i < end; i++) {
+                positions[i]++;
+            }
+        }
+        if (!shown) {
+            return -1;
+        }
+        int to = lowerBound(sourceTo);
+        System.arraycopy(positions, to, positions, to + 1, size - to);
+        positions[to] = sourceTo;
+        size++;
+        return to;
+    }
+
+    /**
+     * @return number of shown items before the given backing list position.
+     */
+    int lowerBound(int sourcePosition) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (positions[middle] < sourcePosition) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compute the removes and inserts that turn one shown subset of the backing list into another. Both
+     * subsets are in backing list order, so a single merge pass gives the minimal operations.
+     *
+     * @param from       shown items, null if all items are shown.
+     * @param to         items to show, null if all items are shown.
+     * @param sourceSize size of the backing list.
+     * @param out        batch receiving the operations.
+     */
+    static void computeUpdates(FilterIndex from, FilterIndex to, int sourceSize, UpdateBatch out) {
+        int oldSize = from == null ? sourceSize : from.size;
+        int newSize = to == null ? sourceSize : to.size;
+        int oldIndex = 0;
+        int newIndex = 0;
+        int position = 0;
+        while (oldIndex < oldSize || newIndex < newSize) {
+            int oldPosition = oldIndex == oldSize ? Integer.MAX_VALUE
+                    : from == null ? oldIndex : from.positions[oldIndex];
+            int newPosition = newIndex == newSize ? Integer.MAX_VALUE
+                    : to == null ? newIndex : to.positions[newIndex];
+            if (oldPosition == newPosition) {
+                oldIndex++;
+                newIndex++;
+                position++;
+            } else if (oldPosition < newPosition) {
+                out.remove(position, 1);
+                oldIndex++;
+            } else {
+                out.insert(position, 1);
+                newIndex++;
+                position++;
+            }
+        }
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + bound);
+        }
+    }
+}
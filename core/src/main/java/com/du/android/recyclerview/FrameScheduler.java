@@ -0,0 +1,134 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.View;
+
+/**
+ * Runs a callback on the next frame, once however many times it is scheduled before. Uses a Choreographer
+ * frame callback from Jelly Bean on, so the callback runs before the layout of the frame; on older
+ * versions the callback is posted with a frame delay.
+ * <p/>
+ * Must be used on the main thread.
+ */
+final class FrameScheduler {
+
+    interface Callback {
+
+        /**
+         * @param frameTimeNanos start time of the frame, in the {@link System#nanoTime()} time base.
+         */
+        void doFrame(long frameTimeNanos);
+    }
+
+    private static final long FRAME_DELAY_MS = 16;
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private final Callback callback;
+
+    /**
+     * Choreographer.FrameCallback on Jelly Bean and later, the type is not referenced before.
+     */
+    private final Object frameCallback;
+    private final Runnable delayedCallback;
+    private boolean scheduled;
+
+    FrameScheduler(Callback callback) {
+        this.callback = callback;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            frameCallback = new ChoreographerCallback(this);
+            delayedCallback = null;
+        } else {
+            frameCallback = null;
+            delayedCallback = new Runnable() {
+                @Override
+                public void run() {
+                    runFrame(System.nanoTime());
+                }
+            };
+        }
+    }
+
+    void schedule() {
+        if (scheduled) return;
+        scheduled = true;
+        if (frameCallback != null) {
+            ChoreographerCallback.post(frameCallback);
+        } else {
+            AdapterExecutors.mainThread().postDelayed(delayedCallback, FRAME_DELAY_MS);
+        }
+    }
+
+    void cancel() {
+        if (!scheduled) return;
+        scheduled = false;
+        if (frameCallback != null) {
+            ChoreographerCallback.remove(frameCallback);
+        } else {
+            AdapterExecutors.mainThread().removeCallbacks(delayedCallback);
+        }
+    }
+
+    boolean isScheduled() {
+        return scheduled;
+    }
+
+    /**
+     * @return refresh interval of the display showing the view, 60Hz if unknown.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+    static long frameIntervalNanos(View view) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            Display display = view.getDisplay();
+            if (display != null && display.getRefreshRate() > 0) {
+                return (long) (1e9 / display.getRefreshRate());
+            }
+        }
+        return DEFAULT_FRAME_INTERVAL_NANOS;
+    }
+
+    private void runFrame(long frameTimeNanos) {
+        scheduled = false;
+        callback.doFrame(frameTimeNanos);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class ChoreographerCallback implements Choreographer.FrameCallback {
+
+        private final FrameScheduler scheduler;
+
+        ChoreographerCallback(FrameScheduler scheduler) {
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            scheduler.runFrame(frameTimeNanos);
+        }
+
+        static void post(Object callback) {
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) callback);
+        }
+
+        static void remove(Object callback) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) callback);
+        }
+    }
+}
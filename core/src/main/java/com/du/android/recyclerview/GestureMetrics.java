@@ -0,0 +1,108 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+/**
+ * Timings of one drag or swipe gesture, reported by {@link RecycleDragDropManager} and
+ * {@link SwipeToDismissTouchListener} to their {@link Listener} once the gesture has settled.
+ * <p/>
+ * Frames are counted from the start of the gesture to its release. A frame is dropped when the main
+ * thread misses a vsync, so the gap between two frames spans more than one refresh interval. Touch
+ * latency is measured from the time of a move event to the start of the frame that draws it;
+ * percentiles are within 25% of the exact value, see {@link AdapterInstrumentation.Snapshot}.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * dragDropManager.setMetricsListener(new GestureMetrics.Listener() {
+ *     @Override
+ *     public void onGestureMetrics(GestureMetrics metrics) {
+ *         Log.i(TAG, "touch p95 " + metrics.touchLatencyP95Nanos / 1000 + " us, dropped "
+ *                 + metrics.droppedFrames + " of " + metrics.frames + " frames");
+ *     }
+ * });
+ * }
+ * </pre>
+ */
+public final class GestureMetrics {
+
+    public static final int GESTURE_DRAG = 0;
+    public static final int GESTURE_SWIPE = 1;
+
+    public interface Listener {
+
+        /**
+         * Called on the main thread when a gesture has settled.
+         *
+         * @param metrics timings of the gesture.
+         */
+        void onGestureMetrics(GestureMetrics metrics);
+    }
+
+    /**
+     * {@link #GESTURE_DRAG} or {@link #GESTURE_SWIPE}.
+     */
+    public final int gesture;
+
+    /**
+     * From the long press, or the swipe passing the touch slop, to the first frame showing the item
+     * moved; -1 if the gesture ended first.
+     */
+    public final long startNanos;
+
+    /**
+     * Move events drawn, touch to render latencies.
+     */
+    public final long moveEvents;
+    public final long touchLatencyP50Nanos;
+    public final long touchLatencyP95Nanos;
+    public final long touchLatencyMaxNanos;
+
+    /**
+     * Times the dragged item was moved in the adapter, 0 for a swipe.
+     */
+    public final int switches;
+
+    /**
+     * Time spent auto scrolling, 0 for a swipe.
+     */
+    public final long autoScrollNanos;
+
+    public final int frames;
+    public final int droppedFrames;
+
+    /**
+     * From the release of the finger to the item resting in its place, or dismissed; -1 if another
+     * gesture started first.
+     */
+    public final long settleNanos;
+
+    GestureMetrics(int gesture, long startNanos, LatencyHistogram touchLatencies, int switches,
+                   long autoScrollNanos, int frames, int droppedFrames, long settleNanos) {
+        this.gesture = gesture;
+        this.startNanos = startNanos;
+        this.moveEvents = touchLatencies.count(0);
+        this.touchLatencyP50Nanos = touchLatencies.percentile(0, 0.50);
+        this.touchLatencyP95Nanos = touchLatencies.percentile(0, 0.95);
+        this.touchLatencyMaxNanos = touchLatencies.max(0);
+        this.switches = switches;
+        this.autoScrollNanos = autoScrollNanos;
+        this.frames = frames;
+        this.droppedFrames = droppedFrames;
+        this.settleNanos = settleNanos;
+    }
+}
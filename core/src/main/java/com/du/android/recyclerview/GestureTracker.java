@@ -0,0 +1,187 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.support.v4.os.TraceCompat;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Measures the gestures of a touch listener into {@link GestureMetrics}, and adds its trace sections.
+ * <p/>
+ * Frames are only followed while a gesture is active and a listener is set, otherwise the touch listener
+ * only pays for a few field checks. A gesture goes through {@link #onStart}, {@link #onRelease} and
+ * {@link #onSettled}; starting a gesture reports the previous one if it has not settled yet.
+ * <p/>
+ * Must be used on the main thread.
+ */
+final class GestureTracker implements FrameScheduler.Callback {
+
+    private static final int IDLE = 0;
+    private static final int ACTIVE = 1;
+    private static final int SETTLING = 2;
+
+    private final int gesture;
+    private final FrameScheduler frameScheduler = new FrameScheduler(this);
+    private final LatencyHistogram touchLatencies = new LatencyHistogram(1);
+
+    private GestureMetrics.Listener listener;
+    private boolean traceEnabled;
+
+    private int state = IDLE;
+    private int gestureId;
+    private long frameIntervalNanos;
+    private long startTime;
+    private long releaseTime;
+    private long startNanos;
+
+    /**
+     * Time of the oldest move event not drawn yet, 0 if none.
+     */
+    private long pendingTouchTime;
+    private long lastFrameNanos;
+    private int switches;
+    private long autoScrollNanos;
+    private int frames;
+    private int droppedFrames;
+
+    /**
+     * @param gesture {@link GestureMetrics#GESTURE_DRAG} or {@link GestureMetrics#GESTURE_SWIPE}.
+     */
+    GestureTracker(int gesture) {
+        this.gesture = gesture;
+    }
+
+    void setListener(GestureMetrics.Listener listener) {
+        this.listener = listener;
+        if (listener == null) {
+            reset();
+        }
+    }
+
+    void setTraceEnabled(boolean traceEnabled) {
+        this.traceEnabled = traceEnabled;
+    }
+
+    void beginSection(String name) {
+        if (traceEnabled) {
+            TraceCompat.beginSection(name);
+        }
+    }
+
+    void endSection() {
+        if (traceEnabled) {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * @param view      view the gesture happens in, for the refresh rate of its display.
+     * @param startTime start of the gesture, in the {@link System#nanoTime()} time base.
+     */
+    void onStart(View view, long startTime) {
+        if (listener == null) return;
+        if (state == SETTLING) {
+            report(-1);
+        }
+        reset();
+        state = ACTIVE;
+        gestureId++;
+        this.startTime = startTime;
+        frameIntervalNanos = FrameScheduler.frameIntervalNanos(view);
+        frameScheduler.schedule();
+    }
+
+    void onMove(MotionEvent event) {
+        if (state != ACTIVE || pendingTouchTime != 0) return;
+        // event times are uptimeMillis, which shares the nanoTime clock
+        pendingTouchTime = event.getEventTime() * 1000000L;
+    }
+
+    void onSwitch() {
+        if (state == ACTIVE) {
+            switches++;
+        }
+    }
+
+    void onAutoScroll(long nanos) {
+        if (state == ACTIVE) {
+            autoScrollNanos += nanos;
+        }
+    }
+
+    /**
+     * The finger is up, the item goes to rest.
+     *
+     * @return id to pass to {@link #onSettled(int)}, 0 if no gesture is measured.
+     */
+    int onRelease() {
+        if (state != ACTIVE) return 0;
+        frameScheduler.cancel();
+        state = SETTLING;
+        releaseTime = System.nanoTime();
+        return gestureId;
+    }
+
+    /**
+     * Report the released gesture, ignored if the id is not the one of the settling gesture.
+     */
+    void onSettled(int id) {
+        if (state != SETTLING || id != gestureId) return;
+        report(System.nanoTime() - releaseTime);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (state != ACTIVE) return;
+        long now = System.nanoTime();
+        if (frames == 0) {
+            startNanos = now - startTime;
+        } else {
+            long intervals = (frameTimeNanos - lastFrameNanos + frameIntervalNanos / 2) / frameIntervalNanos;
+            if (intervals > 1) {
+                droppedFrames += intervals - 1;
+            }
+        }
+        frames++;
+        lastFrameNanos = frameTimeNanos;
+        if (pendingTouchTime != 0) {
+            touchLatencies.record(0, Math.max(0, now - pendingTouchTime));
+            pendingTouchTime = 0;
+        }
+        frameScheduler.schedule();
+    }
+
+    private void report(long settleNanos) {
+        GestureMetrics metrics = new GestureMetrics(gesture, frames == 0 ? -1 : startNanos, touchLatencies,
+                switches, autoScrollNanos, frames, droppedFrames, settleNanos);
+        reset();
+        listener.onGestureMetrics(metrics);
+    }
+
+    private void reset() {
+        frameScheduler.cancel();
+        state = IDLE;
+        touchLatencies.clear();
+        pendingTouchTime = 0;
+        lastFrameNanos = 0;
+        switches = 0;
+        autoScrollNanos = 0;
+        frames = 0;
+        droppedFrames = 0;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+/**
+ * Predicate used by {@link RecyclerArrayAdapter#filter(CharSequence)} to decide which items are shown.
+ * <p/>
+ * {@link #matches(Object, String)} is called on a background thread.
+ *
+ * @param <T> Type of the class in the adapter
+ */
+public abstract class ItemFilter<T> {
+
+    /**
+     * @param item  item of the adapter.
+     * @param query current query.
+     * @return true if the item is shown.
+     */
+    public abstract boolean matches(T item, String query);
+
+    /**
+     * Tell if every item matching the new query also matches the previous one. Only the items shown for
+     * the previous query are then tested. By default true when the new query extends the previous one,
+     * which holds for prefix and substring matching.
+     *
+     * @param previousQuery query of the shown result.
+     * @param query         new query.
+     * @return true if the new query can only hide items.
+     */
+    public boolean isNarrowing(String previousQuery, String query) {
+        return query.startsWith(previousQuery);
+    }
+}
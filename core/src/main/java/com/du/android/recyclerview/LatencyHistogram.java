@@ -0,0 +1,104 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import java.util.Arrays;
+
+/**
+ * Fixed bucket histograms of durations, one per slot. Buckets are log-linear: every power of two is split
+ * into four buckets, so values are known within 25% from 1 microsecond to about 1 second. All storage is
+ * allocated up front, recording does not allocate.
+ */
+final class LatencyHistogram {
+
+    /**
+     * Durations below 2^MIN_EXPONENT nanoseconds go to the first bucket.
+     */
+    private static final int MIN_EXPONENT = 10;
+    private static final int SUB_BUCKETS = 4;
+    private static final int EXPONENTS = 20;
+
+    /**
+     * Underflow bucket, log-linear buckets and overflow bucket.
+     */
+    static final int BUCKETS = 1 + EXPONENTS * SUB_BUCKETS + 1;
+
+    private final int[] buckets;
+    private final long[] counts;
+    private final long[] maximums;
+
+    LatencyHistogram(int slots) {
+        buckets = new int[slots * BUCKETS];
+        counts = new long[slots];
+        maximums = new long[slots];
+    }
+
+    void record(int slot, long nanos) {
+        buckets[slot * BUCKETS + bucketOf(nanos)]++;
+        counts[slot]++;
+        if (nanos > maximums[slot]) {
+            maximums[slot] = nanos;
+        }
+    }
+
+    long count(int slot) {
+        return counts[slot];
+    }
+
+    long max(int slot) {
+        return maximums[slot];
+    }
+
+    /**
+     * @param fraction percentile as a fraction, for eg. 0.95.
+     * @return upper bound of the bucket holding the percentile, in nanoseconds; 0 if nothing was recorded.
+     */
+    long percentile(int slot, double fraction) {
+        long count = counts[slot];
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(count * fraction));
+        long seen = 0;
+        int offset = slot * BUCKETS;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += buckets[offset + bucket];
+            if (seen >= rank) {
+                return Math.min(upperBound(bucket), maximums[slot]);
+            }
+        }
+        return maximums[slot];
+    }
+
+    void clear() {
+        Arrays.fill(buckets, 0);
+        Arrays.fill(counts, 0);
+        Arrays.fill(maximums, 0);
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < (1L << MIN_EXPONENT)) return 0;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - 2)) & (SUB_BUCKETS - 1);
+        return Math.min(BUCKETS - 1, 1 + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket);
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket == 0) return 1L << MIN_EXPONENT;
+        if (bucket == BUCKETS - 1) return Long.MAX_VALUE;
+        int exponent = (bucket - 1) / SUB_BUCKETS + MIN_EXPONENT;
+        int subBucket = (bucket - 1) % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - 2);
+    }
+}
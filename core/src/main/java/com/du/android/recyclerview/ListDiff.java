@@ -0,0 +1,244 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Eugene Myers' O((N+M)D) difference algorithm, linear space variant: the middle snake of every range
+ * is found by running the forward and the reverse search at the same time, then both halves are
+ * processed the same way.
+ * <p/>
+ * The result is written to an {@link UpdateBatch} as removes, inserts and changes, ready to be sent to
+ * the adapter.
+ */
+final class ListDiff {
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int SIZE = 2;
+
+    private static final Comparator<int[]> DIAGONAL_ORDER = new Comparator<int[]>() {
+        @Override
+        public int compare(int[] lhs, int[] rhs) {
+            return lhs[X] - rhs[X];
+        }
+    };
+
+    private ListDiff() {
+    }
+
+    /**
+     * Compute the operations that turn oldList into newList.
+     *
+     * @param oldList  current items, must not change during the computation.
+     * @param newList  target items, must not change during the computation.
+     * @param callback item comparison.
+     * @param out      batch receiving the operations, in old list positions.
+     */
+    static <T> void computeUpdates(List<T> oldList, List<T> newList, DiffCallback<T> callback, UpdateBatch out) {
+        ArrayList<int[]> diagonals = new Search<T>(oldList, newList, callback).findDiagonals();
+
+        // walk backwards, so positions before the current diagonal are still old list positions
+        int posX = oldList.size();
+        int posY = newList.size();
+        for (int i = diagonals.size() - 1; i >= -1; i--) {
+            int x = 0;
+            int y = 0;
+            int size = 0;
+            if (i >= 0) {
+                int[] diagonal = diagonals.get(i);
+                x = diagonal[X];
+                y = diagonal[Y];
+                size = diagonal[SIZE];
+            }
+            int endX = x + size;
+            int endY = y + size;
+            if (posX > endX) {
+                out.remove(endX, posX - endX);
+            }
+            if (posY > endY) {
+                out.insert(endX, posY - endY);
+            }
+            for (int j = size - 1; j >= 0; j--) {
+                if (!callback.areContentsTheSame(oldList.get(x + j), newList.get(y + j))) {
+                    out.change(x + j, 1);
+                }
+            }
+            posX = x;
+            posY = y;
+        }
+    }
+
+    private static final class Search<T> {
+
+        private final List<T> oldList;
+        private final List<T> newList;
+        private final DiffCallback<T> callback;
+
+        /**
+         * Furthest x reached on every diagonal k, stored at index k + mid.
+         */
+        private final int[] forward;
+        private final int[] backward;
+        private final int mid;
+
+        /**
+         * startX, startY, endX, endY and reverse flag of the last found snake.
+         */
+        private final int[] snake = new int[5];
+
+        Search(List<T> oldList, List<T> newList, DiffCallback<T> callback) {
+            this.oldList = oldList;
+            this.newList = newList;
+            this.callback = callback;
+            int max = (oldList.size() + newList.size() + 1) / 2;
+            forward = new int[max * 2 + 1];
+            backward = new int[max * 2 + 1];
+            mid = max;
+        }
+
+        /**
+         * @return matching runs as {x, y, size}, sorted by x.
+         */
+        ArrayList<int[]> findDiagonals() {
+            ArrayList<int[]> diagonals = new ArrayList<int[]>();
+            ArrayList<int[]> ranges = new ArrayList<int[]>();
+            ranges.add(new int[]{0, oldList.size(), 0, newList.size()});
+            while (!ranges.isEmpty()) {
+                int[] range = ranges.remove(ranges.size() - 1);
+                if (!midPoint(range)) continue;
+
+                int startX = snake[0];
+                int startY = snake[1];
+                int endX = snake[2];
+                int endY = snake[3];
+                int dx = endX - startX;
+                int dy = endY - startY;
+                int size = Math.min(dx, dy);
+                if (size > 0) {
+                    if (dx == dy) {
+                        diagonals.add(new int[]{startX, startY, dx});
+                    } else if (snake[4] == 1) {
+                        // reverse snakes end with the insertion or removal
+                        diagonals.add(new int[]{startX, startY, size});
+                    } else if (dy > dx) {
+                        diagonals.add(new int[]{startX, startY + 1, size});
+                    } else {
+                        diagonals.add(new int[]{startX + 1, startY, size});
+                    }
+                }
+                ranges.add(new int[]{range[0], startX, range[2], startY});
+                ranges.add(new int[]{endX, range[1], endY, range[3]});
+            }
+            Collections.sort(diagonals, DIAGONAL_ORDER);
+            return diagonals;
+        }
+
+        /**
+         * Find the middle snake of the range {oldStart, oldEnd, newStart, newEnd}.
+         *
+         * @return false if one side of the range is empty.
+         */
+        private boolean midPoint(int[] range) {
+            int oldSize = range[1] - range[0];
+            int newSize = range[3] - range[2];
+            if (oldSize < 1 || newSize < 1) return false;
+            int max = (oldSize + newSize + 1) / 2;
+            forward[mid + 1] = range[0];
+            backward[mid + 1] = range[1];
+            for (int d = 0; d < max; d++) {
+                if (forward(range, d) || backward(range, d)) return true;
+            }
+            return false;
+        }
+
+        private boolean forward(int[] range, int d) {
+            int delta = (range[1] - range[0]) - (range[3] - range[2]);
+            boolean checkForSnake = Math.abs(delta) % 2 == 1;
+            for (int k = -d; k <= d; k += 2) {
+                int startX;
+                int x;
+                if (k == -d || (k != d && forward[mid + k + 1] > forward[mid + k - 1])) {
+                    x = startX = forward[mid + k + 1];
+                } else {
+                    startX = forward[mid + k - 1];
+                    x = startX + 1;
+                }
+                int y = range[2] + (x - range[0]) - k;
+                int startY = (d == 0 || x != startX) ? y : y - 1;
+                while (x < range[1] && y < range[3] && same(x, y)) {
+                    x++;
+                    y++;
+                }
+                forward[mid + k] = x;
+                if (checkForSnake) {
+                    int backwardK = delta - k;
+                    if (backwardK >= -d + 1 && backwardK <= d - 1 && backward[mid + backwardK] <= x) {
+                        setSnake(startX, startY, x, y, 0);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean backward(int[] range, int d) {
+            int delta = (range[1] - range[0]) - (range[3] - range[2]);
+            boolean checkForSnake = delta % 2 == 0;
+            for (int k = -d; k <= d; k += 2) {
+                int startX;
+                int x;
+                if (k == -d || (k != d && backward[mid + k + 1] < backward[mid + k - 1])) {
+                    x = startX = backward[mid + k + 1];
+                } else {
+                    startX = backward[mid + k - 1];
+                    x = startX - 1;
+                }
+                int y = range[3] - ((range[1] - x) - k);
+                int startY = (d == 0 || x != startX) ? y : y + 1;
+                while (x > range[0] && y > range[2] && same(x - 1, y - 1)) {
+                    x--;
+                    y--;
+                }
+                backward[mid + k] = x;
+                if (checkForSnake) {
+                    int forwardK = delta - k;
+                    if (forwardK >= -d && forwardK <= d && forward[mid + forwardK] >= x) {
+                        setSnake(x, y, startX, startY, 1);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean same(int oldPosition, int newPosition) {
+            return callback.areItemsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+        }
+
+        private void setSnake(int startX, int startY, int endX, int endY, int reverse) {
+            snake[0] = startX;
+            snake[1] = startY;
+            snake[2] = endX;
+            snake[3] = endY;
+            snake[4] = reverse;
+        }
+    }
+}
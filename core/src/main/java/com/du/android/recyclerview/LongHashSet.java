@@ -0,0 +1,165 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+/**
+ * Set of primitive longs, stored in an open addressing table with linear probing. Membership checks do
+ * not allocate or box.
+ */
+final class LongHashSet {
+
+    private static final long FREE = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * FREE marks empty slots, so the value itself is tracked apart.
+     */
+    private boolean containsFree;
+
+    LongHashSet() {
+        allocate(MIN_CAPACITY);
+    }
+
+    boolean contains(long value) {
+        if (value == FREE) return containsFree;
+        return values[find(value)] != FREE;
+    }
+
+    /**
+     * @return true if the value was not in the set.
+     */
+    boolean add(long value) {
+        if (value == FREE) {
+            if (containsFree) return false;
+            containsFree = true;
+            size++;
+            return true;
+        }
+        int slot = find(value);
+        if (values[slot] != FREE) return false;
+        values[slot] = value;
+        if (++size * 2 > values.length) {
+            rehash(values.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the value was in the set.
+     */
+    boolean remove(long value) {
+        if (value == FREE) {
+            if (!containsFree) return false;
+            containsFree = false;
+            size--;
+            return true;
+        }
+        int slot = find(value);
+        if (values[slot] == FREE) return false;
+        removeAt(slot);
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * @return values in no particular order.
+     */
+    long[] toArray() {
+        long[] result = new long[size];
+        int count = 0;
+        if (containsFree) {
+            result[count++] = FREE;
+        }
+        for (long value : values) {
+            if (value != FREE) {
+                result[count++] = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return slot holding the value, or the empty slot where it should be inserted.
+     */
+    private int find(long value) {
+        int slot = hash(value) & mask;
+        while (values[slot] != FREE && values[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void removeAt(int slot) {
+        values[slot] = FREE;
+        size--;
+        // shift back the following entries of the probe sequence, so lookups never stop at the hole
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (values[next] != FREE) {
+            int home = hash(values[next]) & mask;
+            boolean reachable = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!reachable) {
+                values[hole] = values[next];
+                values[next] = FREE;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        long[] oldValues = values;
+        boolean hadFree = containsFree;
+        allocate(capacity);
+        for (long value : oldValues) {
+            if (value == FREE) continue;
+            values[find(value)] = value;
+            size++;
+        }
+        if (hadFree) {
+            containsFree = true;
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        values = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+        containsFree = false;
+    }
+
+    private static int hash(long value) {
+        int h = (int) (value ^ (value >>> 32));
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
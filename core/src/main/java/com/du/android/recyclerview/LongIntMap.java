@@ -0,0 +1,120 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+/**
+ * Map of primitive long keys to int values, stored in an open addressing table with linear probing.
+ * Lookups do not allocate or box.
+ */
+final class LongIntMap {
+
+    private static final long FREE = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * FREE marks empty slots, so its entry is tracked apart.
+     */
+    private boolean containsFree;
+    private int freeValue;
+
+    /**
+     * @param expectedSize number of entries, the table does not grow until it is reached.
+     */
+    LongIntMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * @return value of the key, or the given default if the key is not in the map.
+     */
+    int get(long key, int defaultValue) {
+        if (key == FREE) return containsFree ? freeValue : defaultValue;
+        int slot = find(key);
+        return keys[slot] != FREE ? values[slot] : defaultValue;
+    }
+
+    /**
+     * Add the entry if the key is not in the map yet.
+     *
+     * @return true if the entry was added.
+     */
+    boolean putIfAbsent(long key, int value) {
+        if (key == FREE) {
+            if (containsFree) return false;
+            containsFree = true;
+            freeValue = value;
+            size++;
+            return true;
+        }
+        int slot = find(key);
+        if (keys[slot] != FREE) return false;
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return slot holding the key, or the empty slot where it should be inserted.
+     */
+    private int find(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != FREE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE) continue;
+            int slot = find(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long value) {
+        int h = (int) (value ^ (value >>> 32));
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
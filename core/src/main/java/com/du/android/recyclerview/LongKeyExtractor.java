@@ -0,0 +1,31 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+/**
+ * Extracts a primitive key identifying an item, for eg. its database row id. Unlike {@link KeyExtractor}
+ * the key is not boxed, so {@link StableIdAllocator} looks up ids without allocating.
+ *
+ * @param <T> Type of the class in the adapter
+ */
+public interface LongKeyExtractor<T> {
+
+    /**
+     * @param item model.
+     * @return key of the item, must not change while the item is in the adapter.
+     */
+    long getKey(T item);
+}
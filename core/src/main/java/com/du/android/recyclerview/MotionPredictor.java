@@ -0,0 +1,125 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+/**
+ * Predicts where a finger will be a little ahead in time, from its recent touch samples. The velocity is
+ * the least squares slope of the samples of the last {@link #WINDOW_NANOS}, and the latest sample is
+ * extrapolated along it, at most {@link #MAX_PREDICTION_NANOS} ahead. Samples are kept in a small ring,
+ * nothing is allocated.
+ */
+final class MotionPredictor {
+
+    private static final int CAPACITY = 8;
+
+    /**
+     * Older samples do not tell the current velocity.
+     */
+    private static final long WINDOW_NANOS = 50000000L;
+
+    /**
+     * Further predictions overshoot when the finger turns or stops.
+     */
+    private static final long MAX_PREDICTION_NANOS = 25000000L;
+
+    private final long[] times = new long[CAPACITY];
+    private final float[] xs = new float[CAPACITY];
+    private final float[] ys = new float[CAPACITY];
+    private int next;
+    private int count;
+
+    private float predictedX;
+    private float predictedY;
+
+    void reset() {
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * @param timeNanos sample time, samples older than the latest one are ignored.
+     */
+    void addSample(long timeNanos, float x, float y) {
+        if (count > 0) {
+            int last = (next + CAPACITY - 1) % CAPACITY;
+            if (timeNanos < times[last]) return;
+            if (timeNanos == times[last]) {
+                xs[last] = x;
+                ys[last] = y;
+                return;
+            }
+        }
+        times[next] = timeNanos;
+        xs[next] = x;
+        ys[next] = y;
+        next = (next + 1) % CAPACITY;
+        if (count < CAPACITY) {
+            count++;
+        }
+    }
+
+    /**
+     * Predict the position at the given time, read it with {@link #getPredictedX()} and
+     * {@link #getPredictedY()}.
+     *
+     * @return false if the samples do not give a velocity.
+     */
+    boolean predict(long timeNanos) {
+        if (count < 2) return false;
+        int last = (next + CAPACITY - 1) % CAPACITY;
+        long latest = times[last];
+
+        // least squares over the window, in seconds relative to the latest sample
+        int samples = 0;
+        double sumT = 0;
+        double sumX = 0;
+        double sumY = 0;
+        double sumTT = 0;
+        double sumTX = 0;
+        double sumTY = 0;
+        for (int i = 0; i < count; i++) {
+            int index = (last + CAPACITY - i) % CAPACITY;
+            long age = latest - times[index];
+            if (age > WINDOW_NANOS) break;
+            double t = -age / 1e9;
+            sumT += t;
+            sumX += xs[index];
+            sumY += ys[index];
+            sumTT += t * t;
+            sumTX += t * xs[index];
+            sumTY += t * ys[index];
+            samples++;
+        }
+        double denominator = samples * sumTT - sumT * sumT;
+        if (samples < 2 || denominator <= 0) return false;
+        double velocityX = (samples * sumTX - sumT * sumX) / denominator;
+        double velocityY = (samples * sumTY - sumT * sumY) / denominator;
+
+        double ahead = Math.max(0, Math.min(timeNanos - latest, MAX_PREDICTION_NANOS)) / 1e9;
+        predictedX = (float) (xs[last] + velocityX * ahead);
+        predictedY = (float) (ys[last] + velocityY * ahead);
+        return true;
+    }
+
+    float getPredictedX() {
+        return predictedX;
+    }
+
+    float getPredictedY() {
+        return predictedY;
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Feeds a RecyclerArrayAdapter from background threads. Mutations are enqueued from any thread without
+ * locking and applied on the main thread, all together on the next frame in one batch of the adapter, so
+ * a burst of updates reaches RecyclerView as a few range notifications.
+ * <p/>
+ * Applying stops once the frame budget is spent, the rest is applied on the following frames. Positions
+ * are resolved when a mutation is applied, after the mutations enqueued before it.
+ * <p/>
+ * The queue is a linked list where producers swap the head with one atomic operation and the single
+ * consumer, the main thread, follows the links from the tail.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * queue = new MutationQueue<Message>(adapter);
+ * // on a sync thread
+ * for (Message message : received) {
+ *     queue.addItem(message);
+ * }
+ * }
+ * </pre>
+ *
+ * @param <T> Type of the class in the adapter
+ */
+public final class MutationQueue<T> {
+
+    /**
+     * A change of the adapter, applied on the main thread.
+     *
+     * @param <T> Type of the class in the adapter
+     */
+    public interface Mutation<T> {
+
+        /**
+         * @param adapter adapter to change, in a batch.
+         */
+        void apply(RecyclerArrayAdapter<T, ?> adapter);
+    }
+
+    /**
+     * Time spent applying mutations per frame, a quarter of a 60 fps frame.
+     */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = 4000000L;
+
+    private static final class Node<T> {
+        Mutation<T> mutation;
+        volatile Node<T> next;
+
+        Node(Mutation<T> mutation) {
+            this.mutation = mutation;
+        }
+    }
+
+    private final RecyclerArrayAdapter<T, ?> adapter;
+
+    /**
+     * Last enqueued node, swapped by producers.
+     */
+    private final AtomicReference<Node<T>> head;
+
+    /**
+     * Last applied node, only used by the main thread. Its next node is the first pending one.
+     */
+    private Node<T> tail;
+
+    /**
+     * Set from the first enqueued mutation until the queue is found empty by a drain.
+     */
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final FrameScheduler frameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            drain();
+        }
+    });
+
+    private final Runnable scheduleDrain = new Runnable() {
+        @Override
+        public void run() {
+            frameScheduler.schedule();
+        }
+    };
+
+    private volatile long frameBudgetNanos = DEFAULT_FRAME_BUDGET_NANOS;
+
+    /**
+     * @param adapter adapter changed on the main thread.
+     */
+    public MutationQueue(RecyclerArrayAdapter<T, ?> adapter) {
+        this.adapter = adapter;
+        tail = new Node<T>(null);
+        head = new AtomicReference<Node<T>>(tail);
+    }
+
+    /**
+     * Enqueue a mutation, from any thread.
+     *
+     * @param mutation change applied on the main thread.
+     */
+    public void enqueue(Mutation<T> mutation) {
+        Node<T> node = new Node<T>(mutation);
+        Node<T> previous = head.getAndSet(node);
+        // the node is reachable from the tail only once linked, the drain stops at an unlinked one
+        previous.next = node;
+        if (drainScheduled.compareAndSet(false, true)) {
+            AdapterExecutors.mainThread().post(scheduleDrain);
+        }
+    }
+
+    /**
+     * Append item at the end of the list, see {@link RecyclerArrayAdapter#addItem(Object)}.
+     */
+    public void addItem(final T item) {
+        enqueue(new Mutation<T>() {
+            @Override
+            public void apply(RecyclerArrayAdapter<T, ?> adapter) {
+                adapter.addItem(item);
+            }
+        });
+    }
+
+    /**
+     * Insert item, see {@link RecyclerArrayAdapter#addItem(int, Object)}.
+     */
+    public void addItem(final int position, final T item) {
+        enqueue(new Mutation<T>() {
+            @Override
+            public void apply(RecyclerArrayAdapter<T, ?> adapter) {
+                adapter.addItem(position, item);
+            }
+        });
+    }
+
+    /**
+     * Insert items, see {@link RecyclerArrayAdapter#addItems(int, Collection)}. The collection must not be
+     * modified afterwards.
+     */
+    public void addItems(final int position, final Collection<? extends T> newItems) {
+        enqueue(new Mutation<T>() {
+            @Override
+            public void apply(RecyclerArrayAdapter<T, ?> adapter) {
+                adapter.addItems(position, newItems);
+            }
+        });
+    }
+
+    /**
+     * Replace item, see {@link RecyclerArrayAdapter#setItem(int, Object)}.
+     */
+    public void setItem(final int position, final T item) {
+        enqueue(new Mutation<T>() {
+            @Override
+            public void apply(RecyclerArrayAdapter<T, ?> adapter) {
+                adapter.setItem(position, item);
+            }
+        });
+    }
+
+    /**
+     * Move item, see {@link RecyclerArrayAdapter#moveItem(int, int)}.
+     */
+    public void moveItem(final int from, final int to) {
+        enqueue(new Mutation<T>() {
+            @Override
+            public void apply(RecyclerArrayAdapter<T, ?> adapter) {
+                adapter.moveItem(from, to);
+            }
+        });
+    }
+
+    /**
+     * Remove items, see {@link RecyclerArrayAdapter#removeItems(int, int)}.
+     */
+    public void removeItems(final int position, final int count) {
+        enqueue(new Mutation<T>() {
+            @Override
+            public void apply(RecyclerArrayAdapter<T, ?> adapter) {
+                adapter.removeItems(position, count);
+            }
+        });
+    }
+
+    /**
+     * @param budgetNanos time spent applying mutations per frame, at least one mutation is applied.
+     */
+    public void setFrameBudget(long budgetNanos) {
+        frameBudgetNanos = budgetNanos;
+    }
+
+    /**
+     * Apply the pending mutations now, regardless of the frame budget. Must be called on the main thread.
+     */
+    public void flush() {
+        frameScheduler.cancel();
+        apply(Long.MAX_VALUE);
+        finishDrain();
+    }
+
+    private void drain() {
+        if (apply(System.nanoTime() + frameBudgetNanos)) {
+            frameScheduler.schedule();
+        } else {
+            finishDrain();
+        }
+    }
+
+    /**
+     * @return true if mutations are left because the deadline passed.
+     */
+    private boolean apply(long deadlineNanos) {
+        if (tail.next == null) return false;
+        adapter.beginBatch();
+        try {
+            Node<T> next;
+            while ((next = tail.next) != null) {
+                tail = next;
+                Mutation<T> mutation = next.mutation;
+                next.mutation = null;
+                mutation.apply(adapter);
+                if (System.nanoTime() >= deadlineNanos && tail.next != null) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            adapter.commit();
+        }
+    }
+
+    private void finishDrain() {
+        drainScheduled.set(false);
+        // a producer that found the flag still set has linked its node before, it is seen here
+        if (tail.next != null && drainScheduled.compareAndSet(false, true)) {
+            frameScheduler.schedule();
+        }
+    }
+}
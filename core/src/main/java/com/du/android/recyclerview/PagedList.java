@@ -0,0 +1,362 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.util.Log;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * List backed by a {@link DataSource}, loaded one page at a time. Positions of pages that are not loaded
+ * return null (placeholders).
+ * <p/>
+ * Items can be moved, inserted and removed within loaded pages, for eg. by drag and drop or swipe to
+ * dismiss. Pages have variable sizes after such edits, the position of a page is found with a Fenwick
+ * tree over page sizes. Edited pages are never evicted, so edits are not lost.
+ * <p/>
+ * All methods must be called on the main thread.
+ */
+final class PagedList<T> extends AbstractList<T> {
+
+    private static final String LOG_TAG = "PagedList";
+
+    private final DataSource<T> dataSource;
+    private final int pageSize;
+    private final int prefetchDistance;
+    private final int prefetchPages;
+    private final int maxLoadedPages;
+
+    private RecyclerArrayAdapter<T, ?> adapter;
+
+    /**
+     * Incremented on invalidation, results of older loads are dropped.
+     */
+    private int generation;
+
+    private int size;
+    private int sourceCount;
+    private int pageCount;
+
+    private ArrayList<ArrayList<T>> pages = new ArrayList<ArrayList<T>>();
+    private int[] pageSizes = new int[0];
+    private int[] tree = new int[1];
+    private boolean[] loading = new boolean[0];
+    private boolean[] edited = new boolean[0];
+    private int loadedPages;
+    private int lastAccessedPage;
+
+    /**
+     * Offset within the page found by the last {@link #locate(int)} call.
+     */
+    private int locatedOffset;
+
+    PagedList(DataSource<T> dataSource, int pageSize, int prefetchDistance, int maxLoadedItems) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        this.dataSource = dataSource;
+        this.pageSize = pageSize;
+        this.prefetchDistance = prefetchDistance;
+        this.prefetchPages = (prefetchDistance + pageSize - 1) / pageSize;
+        this.maxLoadedPages = Math.max(maxLoadedItems / pageSize, 2 * prefetchPages + 1);
+    }
+
+    /**
+     * Start loading, items are added to the adapter once the source count is known.
+     */
+    void attach(RecyclerArrayAdapter<T, ?> adapter) {
+        this.adapter = adapter;
+        loadCount();
+    }
+
+    boolean isAttached() {
+        return adapter != null;
+    }
+
+    /**
+     * Drop all pages and reload the source.
+     */
+    void invalidate() {
+        generation++;
+        int oldSize = size;
+        reset(0);
+        if (oldSize > 0) {
+            adapter.dispatchRemoved(0, oldSize);
+        }
+        loadCount();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index, size);
+        ArrayList<T> page = pages.get(locate(index));
+        return page == null ? null : page.get(locatedOffset);
+    }
+
+    /**
+     * @return true if the item at the given position is loaded.
+     */
+    boolean isLoaded(int index) {
+        checkIndex(index, size);
+        return pages.get(locate(index)) != null;
+    }
+
+    @Override
+    public T set(int index, T item) {
+        checkIndex(index, size);
+        int page = locate(index);
+        T previous = loadedPage(page).set(locatedOffset, item);
+        edited[page] = true;
+        return previous;
+    }
+
+    @Override
+    public void add(int index, T item) {
+        checkIndex(index, size + 1);
+        if (pageCount == 0) {
+            throw new IllegalStateException("Items can not be added before the source is loaded");
+        }
+        int page;
+        int offset;
+        if (index == size) {
+            page = pageCount - 1;
+            offset = pageSizes[page];
+        } else {
+            page = locate(index);
+            offset = locatedOffset;
+        }
+        if (offset == 0 && page > 0 && pages.get(page) == null && pages.get(page - 1) != null) {
+            // append to the end of the previous page instead
+            page--;
+            offset = pageSizes[page];
+        }
+        loadedPage(page).add(offset, item);
+        resize(page, 1);
+        edited[page] = true;
+        modCount++;
+    }
+
+    @Override
+    public T remove(int index) {
+        checkIndex(index, size);
+        int page = locate(index);
+        T removed = loadedPage(page).remove(locatedOffset);
+        resize(page, -1);
+        edited[page] = true;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Move an item. Both items must be loaded, which is checked before the item is taken out so a failed
+     * move leaves the list as it was.
+     *
+     * @param from index of the item.
+     * @param to   new index of the item.
+     */
+    void move(int from, int to) {
+        if (!isLoaded(from) || !isLoaded(to)) {
+            throw new IllegalStateException("Items " + from + " and " + to + " must be loaded to move");
+        }
+        add(to, remove(from));
+    }
+
+    /**
+     * Load pages around the given position and remember it as the current window.
+     *
+     * @param index position being displayed.
+     */
+    void loadAround(int index) {
+        if (index < 0 || index >= size) return;
+        lastAccessedPage = locate(index);
+        int first = locate(Math.max(0, index - prefetchDistance));
+        int last = locate(Math.min(size - 1, index + prefetchDistance));
+        for (int page = first; page <= last; page++) {
+            requestPage(page);
+        }
+    }
+
+    private void loadCount() {
+        final int expectedGeneration = generation;
+        adapter.backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final int count = dataSource.getCount();
+                AdapterExecutors.mainThread().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (expectedGeneration != generation) return;
+                        reset(count);
+                        if (count > 0) {
+                            adapter.dispatchInserted(0, count);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void requestPage(final int page) {
+        if (pages.get(page) != null || loading[page]) return;
+        loading[page] = true;
+        final int expectedGeneration = generation;
+        final int start = page * pageSize;
+        final int count = Math.min(pageSize, sourceCount - start);
+        adapter.backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> result = null;
+                try {
+                    result = dataSource.loadRange(start, count);
+                } catch (RuntimeException e) {
+                    Log.w(LOG_TAG, "Failed to load items " + start + "-" + (start + count), e);
+                }
+                final List<T> loaded = result;
+                AdapterExecutors.mainThread().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (expectedGeneration != generation) return;
+                        loading[page] = false;
+                        if (loaded != null) {
+                            onPageLoaded(page, loaded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int page, List<T> loaded) {
+        pages.set(page, new ArrayList<T>(loaded));
+        loadedPages++;
+
+        int position = prefix(page);
+        int expected = pageSizes[page];
+        int actual = loaded.size();
+        resize(page, actual - expected);
+        adapter.dispatchChanged(position, Math.min(expected, actual));
+        if (actual < expected) {
+            adapter.dispatchRemoved(position + actual, expected - actual);
+        } else if (actual > expected) {
+            adapter.dispatchInserted(position + expected, actual - expected);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Drop loaded pages farthest from the current window until the budget is met. Pages in the window
+     * and edited pages are kept.
+     */
+    private void evictIfNeeded() {
+        while (loadedPages > maxLoadedPages) {
+            int farthest = -1;
+            int farthestDistance = prefetchPages;
+            for (int page = 0; page < pageCount; page++) {
+                if (pages.get(page) == null || edited[page]) continue;
+                int distance = Math.abs(page - lastAccessedPage);
+                if (distance > farthestDistance) {
+                    farthest = page;
+                    farthestDistance = distance;
+                }
+            }
+            if (farthest == -1) return;
+            pages.set(farthest, null);
+            loadedPages--;
+        }
+    }
+
+    private ArrayList<T> loadedPage(int page) {
+        ArrayList<T> items = pages.get(page);
+        if (items == null) {
+            throw new IllegalStateException("Items of page " + page + " are not loaded");
+        }
+        return items;
+    }
+
+    private void reset(int count) {
+        sourceCount = count;
+        size = count;
+        pageCount = (count + pageSize - 1) / pageSize;
+        pages = new ArrayList<ArrayList<T>>(pageCount);
+        pageSizes = new int[pageCount];
+        tree = new int[pageCount + 1];
+        loading = new boolean[pageCount];
+        edited = new boolean[pageCount];
+        loadedPages = 0;
+        lastAccessedPage = 0;
+        for (int page = 0; page < pageCount; page++) {
+            pages.add(null);
+            pageSizes[page] = Math.min(pageSize, count - page * pageSize);
+            tree[page + 1] += pageSizes[page];
+            int parent = page + 1 + ((page + 1) & -(page + 1));
+            if (parent <= pageCount) {
+                tree[parent] += tree[page + 1];
+            }
+        }
+        modCount++;
+    }
+
+    private void resize(int page, int delta) {
+        if (delta == 0) return;
+        pageSizes[page] += delta;
+        size += delta;
+        for (int i = page + 1; i <= pageCount; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * @return number of items in pages before the given one.
+     */
+    private int prefix(int page) {
+        int sum = 0;
+        for (int i = page; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Find the page holding the given position, the offset within the page is stored in
+     * {@link #locatedOffset}.
+     */
+    private int locate(int index) {
+        int page = 0;
+        int remaining = index;
+        for (int step = Integer.highestOneBit(pageCount); step > 0; step >>= 1) {
+            int next = page + step;
+            if (next <= pageCount && tree[next] <= remaining) {
+                page = next;
+                remaining -= tree[next];
+            }
+        }
+        locatedOffset = remaining;
+        return page;
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + bound);
+        }
+    }
+}
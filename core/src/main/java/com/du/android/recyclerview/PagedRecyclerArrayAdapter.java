@@ -0,0 +1,257 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.List;
+
+/**
+ * RecyclerArrayAdapter that does not keep the whole data set in memory. Items are loaded from a
+ * {@link DataSource} one page at a time on the background executor, when positions around them are bound.
+ * <p/>
+ * Positions that are not loaded yet are placeholders: {@link #getItem(int)} returns null for them and
+ * the item is rebound once its page is loaded. Pages far from the displayed positions are dropped when
+ * more than maxLoadedItems are in memory.
+ * <p/>
+ * Items are identified by key, a {@link KeyExtractor} or {@link LongKeyExtractor} is required: a dropped
+ * page is loaded again as new instances, which keep their ids and selection through their keys. The ids
+ * do not reference the items, so dropped pages are not kept in memory.
+ * <p/>
+ * Drag and drop and swipe to dismiss work on loaded items; moved, removed or inserted items are kept in
+ * memory until {@link #invalidate()}.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * adapter = new InboxAdapter(new DataSource<Message>() {
+ *     @Override
+ *     public int getCount() {
+ *         return database.countMessages();
+ *     }
+ *
+ *     @Override
+ *     public List<Message> loadRange(int start, int count) {
+ *         return database.loadMessages(start, count);
+ *     }
+ * }, new KeyExtractor<Message>() {
+ *     @Override
+ *     public Object getKey(Message message) {
+ *         return message.uuid;
+ *     }
+ * }, 50, 100, 1000);
+ * }
+ * </pre>
+ *
+ * @param <T> Type of the class in this adapter
+ * @param <H> - ViewHolder type
+ */
+public abstract class PagedRecyclerArrayAdapter<T, H extends RecyclerView.ViewHolder> extends RecyclerArrayAdapter<T, H> {
+
+    private final PagedList<T> pagedList;
+
+    /**
+     * @param dataSource       source of items.
+     * @param keyExtractor     extracts item keys, ids must survive a page being dropped and loaded again.
+     * @param pageSize         number of items loaded at once.
+     * @param prefetchDistance number of items loaded ahead of (and behind) a bound position.
+     * @param maxLoadedItems   number of loaded items above which far pages are dropped.
+     */
+    public PagedRecyclerArrayAdapter(DataSource<T> dataSource, KeyExtractor<T> keyExtractor, int pageSize,
+                                     int prefetchDistance, int maxLoadedItems) {
+        super(new PagedList<T>(dataSource, pageSize, prefetchDistance, maxLoadedItems));
+        // placeholders have no identity
+        setHasStableIds(false);
+        pagedList = (PagedList<T>) items;
+        setKeyExtractor(keyExtractor);
+    }
+
+    /**
+     * @param dataSource       source of items.
+     * @param longKeyExtractor extracts primitive item keys, ids must survive a page being dropped and
+     *                         loaded again.
+     * @param pageSize         number of items loaded at once.
+     * @param prefetchDistance number of items loaded ahead of (and behind) a bound position.
+     * @param maxLoadedItems   number of loaded items above which far pages are dropped.
+     */
+    public PagedRecyclerArrayAdapter(DataSource<T> dataSource, LongKeyExtractor<T> longKeyExtractor, int pageSize,
+                                     int prefetchDistance, int maxLoadedItems) {
+        super(new PagedList<T>(dataSource, pageSize, prefetchDistance, maxLoadedItems));
+        setHasStableIds(false);
+        pagedList = (PagedList<T>) items;
+        setLongKeyExtractor(longKeyExtractor);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key extractor is null, items of a page loaded again would
+     *                                  get new ids.
+     */
+    @Override
+    public void setKeyExtractor(KeyExtractor<T> keyExtractor) {
+        if (keyExtractor == null) {
+            throw new IllegalArgumentException("Paged adapters need a key extractor");
+        }
+        super.setKeyExtractor(keyExtractor);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key extractor is null, items of a page loaded again would
+     *                                  get new ids.
+     */
+    @Override
+    public void setLongKeyExtractor(LongKeyExtractor<T> longKeyExtractor) {
+        if (longKeyExtractor == null) {
+            throw new IllegalArgumentException("Paged adapters need a key extractor");
+        }
+        super.setLongKeyExtractor(longKeyExtractor);
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        if (!pagedList.isAttached()) {
+            pagedList.attach(this);
+        }
+    }
+
+    /**
+     * Return the item at the given position and load the pages around it.
+     *
+     * @param position item index
+     * @return model, null if not loaded yet.
+     */
+    @Override
+    public T getItem(int position) {
+        pagedList.loadAround(position);
+        return pagedList.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        if (position < 0 || position >= items.size() || !pagedList.isLoaded(position)) {
+            return RecyclerView.NO_ID;
+        }
+        return super.getItemId(position);
+    }
+
+    /**
+     * @param position item index
+     * @return true if the item at the given position is not loaded yet.
+     */
+    public boolean isPlaceholder(int position) {
+        return !pagedList.isLoaded(position);
+    }
+
+    /**
+     * Drop all loaded pages and local changes and load the data source again, for eg. after it changed.
+     */
+    public void invalidate() {
+        clearUndoHistory();
+        if (pagedList.isAttached()) {
+            pagedList.invalidate();
+        }
+    }
+
+    /**
+     * @return false if either item is a placeholder, which can not be moved nor moved over.
+     */
+    @Override
+    public boolean canMoveItem(int from, int to) {
+        return !isPlaceholder(from) && !isPlaceholder(to);
+    }
+
+    /**
+     * @throws IllegalStateException if either item is a placeholder.
+     */
+    @Override
+    public void moveItem(int from, int to) {
+        checkLoaded(from, 1);
+        checkLoaded(to, 1);
+        super.moveItem(from, to);
+    }
+
+    /**
+     * @throws IllegalStateException if the item is a placeholder, check {@link #isPlaceholder(int)} first,
+     *                               for eg. in {@link SwipeToDismissTouchListener.DismissCallbacks#canDismiss(int)}.
+     */
+    @Override
+    public void removeItem(int pos) {
+        checkLoaded(pos, 1);
+        super.removeItem(pos);
+    }
+
+    /**
+     * @throws IllegalStateException if one of the items is a placeholder.
+     */
+    @Override
+    public void removeItems(int position, int count) {
+        checkLoaded(position, count);
+        super.removeItems(position, count);
+    }
+
+    /**
+     * Not supported, finding the selected items would load every page: only the given item is dragged.
+     *
+     * @return the given position.
+     */
+    @Override
+    public int liftSelection(int position) {
+        return position;
+    }
+
+    /**
+     * Moves at once, pages loaded during a drag are placed by position in the backing list.
+     */
+    @Override
+    public void moveItemDeferred(int from, int to) {
+        moveItem(from, to);
+    }
+
+    /**
+     * The order is given by the data source, a saved order is not restored.
+     */
+    @Override
+    boolean restoreOrder(long[] order) {
+        return false;
+    }
+
+    /**
+     * Not supported, pages are loaded by position in the data source.
+     */
+    @Override
+    public void filter(CharSequence query) {
+        throw new UnsupportedOperationException("filter() is not supported by paged adapters");
+    }
+
+    /**
+     * Not supported, the content comes from the data source. Use {@link #invalidate()} instead.
+     */
+    @Override
+    public void submitList(List<T> newList) {
+        throw new UnsupportedOperationException("submitList() is not supported by paged adapters, use invalidate()");
+    }
+
+    /**
+     * Fail before touching the list, a placeholder can not be removed from it.
+     */
+    private void checkLoaded(int position, int count) {
+        for (int i = position, end = position + count; i < end; i++) {
+            if (isPlaceholder(i)) {
+                throw new IllegalStateException("Item " + i + " is not loaded");
+            }
+        }
+    }
+}
@@ -17,20 +17,24 @@ package com.du.android.recyclerview;
 
 import android.animation.Animator;
 import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.helper.ItemTouchHelper;
 import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewPropertyAnimator;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
 
+
 /**
  * Implementation of RecyclerView.OnItemTouchListener that allows reordering items in RecyclerView by dragging and dropping.
  * Instance of this class should be added to RecylcerView using {@link android.support.v7.widget.RecyclerView#addOnItemTouchListener(android.support.v7.widget.RecyclerView.OnItemTouchListener)} method.
@@ -42,9 +46,7 @@ import android.widget.ImageView;
  * dragDropTouchListener = new DragDropTouchListener(recyclerView, this) {
  *       @Override
  *       protected void onItemSwitch(RecyclerView recyclerView, int from, int to) {
- *           adapter.swapPositions(from, to);
- *           adapter.notifyItemChanged(to);
- *           adapter.notifyItemChanged(from);
+ *           adapter.moveItem(from, to);
  *
  *        @Override
  *        protected void onItemDrop(RecyclerView recyclerView, int position) {
@@ -56,6 +58,10 @@ import android.widget.ImageView;
  * </pre>
  * <p/>
  * Actual drag is started by calling {@link #startDrag()} somewhere later, for eg. in long touch listener
+ * <p/>
+ * The dragged item is drawn as set by {@link #setRenderMode(int)}: by default a thumbnail in an ImageView
+ * added to the parent of RecyclerView, which must be a FrameLayout or alike. The other modes draw it in an
+ * ItemDecoration of RecyclerView, so it works with any parent and moving it only redraws RecyclerView.
  */
 public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener {
 
@@ -63,17 +69,100 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
 
     public static final int ORIENTATION_VERTICAL = 0x00000002;
 
+    /**
+     * The dragged item follows the finger in both directions, for grid layout managers. Auto scroll goes
+     * along the scroll axis of the layout manager.
+     */
+    public static final int ORIENTATION_GRID = ORIENTATION_HORIZONTAL | ORIENTATION_VERTICAL;
+
+    /**
+     * Render mode: a thumbnail in an ImageView added to the parent of RecyclerView.
+     */
+    public static final int RENDER_MODE_VIEW = 0;
+
+    /**
+     * Render mode: a thumbnail drawn over the items of RecyclerView.
+     */
+    public static final int RENDER_MODE_DECORATION = 1;
+
+    /**
+     * Render mode: the item view itself drawn over the items of RecyclerView, without a thumbnail. The view
+     * is kept from recycling during the drag. Needs the view to look the same while dragged, which is the
+     * case with the default {@link RecyclerArrayAdapter#onBindDragState} that only hides it.
+     */
+    public static final int RENDER_MODE_LIVE = 2;
+
     private static final String LOG_TAG = "DRAG-DROP";
+
+    /**
+     * Debug logging, compiled out unless set.
+     */
+    private static final boolean DEBUG = false;
+
+    private static final String TRACE_START = "RecycleDragDropManager start";
+    private static final String TRACE_MOVE = "RecycleDragDropManager move";
+    private static final String TRACE_AUTO_SCROLL = "RecycleDragDropManager auto scroll";
+    private static final String TRACE_DROP = "RecycleDragDropManager drop";
+    private static final String TRACE_SETTLE = "RecycleDragDropManager settle";
     private static final int MOVE_DURATION = 150;
 
+    /**
+     * Default auto scroll edge zone, in dp.
+     */
+    private static final int DEFAULT_SCROLL_EDGE_DP = 64;
+
+    /**
+     * Default auto scroll speed with the finger at the very edge, in dp per second.
+     */
+    private static final int DEFAULT_SCROLL_SPEED_DP = 1200;
+
+    /**
+     * The speed grows by its base value every second the finger stays in the edge zone, up to this
+     * factor.
+     */
+    private static final float MAX_DWELL_FACTOR = 4f;
+
+    /**
+     * Views drawn in the thumbnail of a multi-item drag, the touched one on top.
+     */
+    private static final int MAX_STACKED_VIEWS = 3;
+
+    /**
+     * Offset between the views of a multi-item drag thumbnail, in dp.
+     */
+    private static final int STACK_OFFSET_DP = 6;
+
+
     private RecyclerView recyclerView;
     private RecyclerArrayAdapter adapter;
     private Drawable dragHighlight;
 
-    private final int scrollAmount;
+    private int scrollEdge;
+    private float scrollSpeed;
     private int downY = -1;
     private int downX = -1;
+
+    /**
+     * Last position of the finger in RecyclerView, the auto scroll goes on while it stays still.
+     */
+    private float touchX;
+    private float touchY;
     private View mobileView;
+
+    /**
+     * Position and size of the dragged item in RecyclerView, however it is drawn.
+     */
+    private float floatingX;
+    private float floatingY;
+
+    /**
+     * Position of the dragged item given by the latest touch sample, the drop target is resolved from it.
+     * The item is drawn ahead of it when tracking with low latency.
+     */
+    private float itemX;
+    private float itemY;
+    private int floatingWidth;
+    private int floatingHeight;
     private float mobileViewStartY = -1;
     private float mobileViewStartX = -1;
     private int mobileViewCurrentPos = -1;
@@ -91,6 +180,28 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
      */
     private Bitmap draggingThumbnail;
 
+    /**
+     * Pool the dragging thumbnail is taken from and given back to.
+     */
+    private DragBitmapPool bitmapPool = new DragBitmapPool();
+
+    private int renderMode = RENDER_MODE_VIEW;
+
+    /**
+     * Draws the dragged item in decoration and live render modes.
+     */
+    private DragDecoration dragDecoration;
+
+    /**
+     * Holder of the dragged view in live render mode, not recyclable during the drag.
+     */
+    private RecyclerView.ViewHolder liveHolder;
+
+    /**
+     * Set while the dropped item goes to its place, no drag starts meanwhile.
+     */
+    private boolean dropping;
+
     /**
      * Simple gesture listener used to cached long touched in order to start the drag.
      */
@@ -107,9 +218,55 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
     private AutoScroller autoScroller;
 
     /**
-     * Used to know if the auto scroller is already started.
+     * Laid out bounds and adapter positions of the children, reused by each target search.
+     */
+    private int[] childStarts = new int[0];
+    private int[] childEnds = new int[0];
+    private int[] childPositions = new int[0];
+
+    /**
+     * Hit testing in grid orientation, rebuilt on layout and scroll. The listeners are only registered
+     * during a drag, so RecyclerView does not keep an idle manager reachable through them.
      */
-    private boolean isScrolling;
+    private ChildBoundsIndex childIndex;
+    private ViewTreeObserver.OnGlobalLayoutListener childLayoutListener;
+    private RecyclerView.OnScrollListener childScrollListener;
+
+    /**
+     * Observer the layout listener was added to, null when not registered.
+     */
+    private ViewTreeObserver childLayoutObserver;
+
+    private final GestureTracker gestureTracker = new GestureTracker(GestureMetrics.GESTURE_DRAG);
+
+    /**
+     * Gesture id of the drop in progress, see {@link GestureTracker#onRelease()}.
+     */
+    private int droppingGesture;
+
+    /**
+     * Draw the dragged item where the finger is predicted to be at the next frame.
+     */
+    private boolean lowLatencyTracking;
+
+    /**
+     * Leave the backing list untouched until the drop, see {@link RecyclerArrayAdapter#moveItemDeferred}.
+     */
+    private boolean deferredCommit;
+    private int dragStartPos = -1;
+    /** Backing list position of the dragged item when picked up, for the journal. */
+    private int dragStartSourcePos = -1;
+
+    /**
+     * Drag the other selected items along with the touched one, see {@link #setMultiDragEnabled(boolean)};
+     * liftStartPos is the position of the touched item before the others were lifted.
+     */
+    private boolean multiDrag;
+    private int liftStartPos = -1;
+
+    private ChangeJournal changeJournal;
+    private final MotionPredictor motionPredictor = new MotionPredictor();
+    private long frameIntervalNanos;
 
     /**
      * Current orientation.
@@ -121,6 +278,7 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
         switch (orientation) {
             case ORIENTATION_HORIZONTAL:
             case ORIENTATION_VERTICAL:
+            case ORIENTATION_GRID:
                 this.orientation = orientation;
                 break;
             default:
@@ -134,13 +292,73 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
         dragging = false;
 
         DisplayMetrics displayMetrics = recyclerView.getResources().getDisplayMetrics();
-        this.scrollAmount = (int) (50 / displayMetrics.density);
+        this.scrollEdge = (int) (DEFAULT_SCROLL_EDGE_DP * displayMetrics.density + 0.5f);
+        this.scrollSpeed = DEFAULT_SCROLL_SPEED_DP * displayMetrics.density;
 
         // init gesture listener used to catch long pressed event.
         initInternalGestureListener();
 
         // init auto scroller used to scroll while dragging.
         autoScroller = new AutoScroller();
+
+        if (orientation == ORIENTATION_GRID) {
+            initChildIndex();
+        }
+
+        // pooled thumbnails are kept between drags, not once the list is gone
+        recyclerView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+            @Override
+            public void onViewAttachedToWindow(View v) {
+            }
+
+            @Override
+            public void onViewDetachedFromWindow(View v) {
+                bitmapPool.clear();
+            }
+        });
+    }
+
+    private void initChildIndex() {
+        childIndex = new ChildBoundsIndex();
+        childLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+            @Override
+            public void onGlobalLayout() {
+                childIndex.invalidate();
+            }
+        };
+        childScrollListener = new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                childIndex.invalidate();
+            }
+        };
+    }
+
+    /**
+     * Follow layouts and scrolls for the child index, until {@link #stopChildIndex()}.
+     */
+    private void startChildIndex() {
+        if (childIndex == null || childLayoutObserver != null) return;
+        childIndex.invalidate();
+        childLayoutObserver = recyclerView.getViewTreeObserver();
+        childLayoutObserver.addOnGlobalLayoutListener(childLayoutListener);
+        recyclerView.addOnScrollListener(childScrollListener);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void stopChildIndex() {
+        if (childLayoutObserver == null) return;
+        // a dead observer was merged into the one of the window, which has the listener
+        ViewTreeObserver observer = childLayoutObserver.isAlive()
+                ? childLayoutObserver : recyclerView.getViewTreeObserver();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            observer.removeOnGlobalLayoutListener(childLayoutListener);
+        } else {
+            observer.removeGlobalOnLayoutListener(childLayoutListener);
+        }
+        childLayoutObserver = null;
+        recyclerView.removeOnScrollListener(childScrollListener);
+        childIndex.clear();
     }
 
     @Override
@@ -193,23 +411,82 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
      * Call this to indicate drag start
      */
     public void startDrag() {
+        if (dropping) return;
+        long startTime = System.nanoTime();
+        gestureTracker.beginSection(TRACE_START);
+        boolean started = pickUp();
+        gestureTracker.endSection();
+        if (started) {
+            gestureTracker.onStart(recyclerView, startTime);
+        }
+    }
+
+    /**
+     * Show the item under the down event as dragged.
+     *
+     * @return true if dragging started.
+     */
+    private boolean pickUp() {
         View viewUnder = recyclerView.findChildViewUnder(downX, downY);
-        if (viewUnder == null) return;
+        if (viewUnder == null) return false;
         dragging = true;
 
-        mobileViewCurrentPos = recyclerView.getChildPosition(viewUnder);
-
-        mobileView = getDraggingView(viewUnder);
-        mobileView.setX(viewUnder.getX());
-        mobileView.setY(viewUnder.getY());
-        mobileViewStartY = mobileView.getY();
-        mobileViewStartX = mobileView.getX();
+        mobileViewCurrentPos = recyclerView.getChildAdapterPosition(viewUnder);
+        dragStartPos = mobileViewCurrentPos;
+        if (mobileViewCurrentPos == RecyclerView.NO_POSITION) {
+            dragging = false;
+            return false;
+        }
+        dragStartSourcePos = adapter.getSourcePosition(mobileViewCurrentPos);
+        startChildIndex();
+
+        floatingWidth = viewUnder.getWidth();
+        floatingHeight = viewUnder.getHeight();
+        mobileViewStartX = viewUnder.getX();
+        mobileViewStartY = viewUnder.getY();
+
+        Bitmap stack = null;
+        if (multiDrag && adapter.isSelected(mobileViewCurrentPos) && adapter.getSelectedCount() > 1) {
+            // found while the views of the lifted items are still laid out
+            View[] stacked = getStackedViews(viewUnder, mobileViewCurrentPos);
+            liftStartPos = mobileViewCurrentPos;
+            mobileViewCurrentPos = adapter.liftSelection(mobileViewCurrentPos);
+            dragStartPos = mobileViewCurrentPos;
+            if (adapter.hasLiftedItems()) {
+                stack = getStackThumbnail(stacked);
+            }
+        }
 
-        ViewGroup.LayoutParams lp = new ViewGroup.LayoutParams(ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT);
-        ((ViewGroup) recyclerView.getParent()).addView(mobileView, lp);
-        mobileView.bringToFront();
+        // a stack has no live view to draw
+        int mode = stack != null && renderMode == RENDER_MODE_LIVE ? RENDER_MODE_DECORATION : renderMode;
+        switch (mode) {
+            case RENDER_MODE_VIEW:
+                mobileView = getDraggingView(stack != null ? stack : getDraggingThumbnail(viewUnder));
+                // sized as the item, the thumbnail may be downscaled
+                ViewGroup.LayoutParams lp = new ViewGroup.LayoutParams(floatingWidth, floatingHeight);
+                ((ViewGroup) recyclerView.getParent()).addView(mobileView, lp);
+                mobileView.bringToFront();
+                break;
+            case RENDER_MODE_DECORATION:
+                dragDecoration.showThumbnail(stack != null ? stack : getDraggingThumbnail(viewUnder),
+                        floatingWidth, floatingHeight);
+                break;
+            default:
+                liveHolder = recyclerView.getChildViewHolder(viewUnder);
+                liveHolder.setIsRecyclable(false);
+                viewUnder.setPressed(false);
+                dragDecoration.showLiveView(viewUnder, dragHighlight);
+                break;
+        }
+        moveFloating(mobileViewStartX, mobileViewStartY);
+        if (lowLatencyTracking) {
+            motionPredictor.reset();
+            frameIntervalNanos = FrameScheduler.frameIntervalNanos(recyclerView);
+        }
+        // hide now, the drag state rebind comes with the next frame
         viewUnder.setVisibility(View.INVISIBLE);
-
+        adapter.setItemDragged(mobileViewCurrentPos, true);
+        return true;
     }
 
     private boolean down(MotionEvent event) {
@@ -225,94 +502,196 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
             return false;
         }
 
+        gestureTracker.beginSection(TRACE_MOVE);
+        gestureTracker.onMove(event);
         int pointerIndex = event.findPointerIndex(activePointerId);
 
+        touchX = event.getX(pointerIndex);
+        touchY = event.getY(pointerIndex);
         if (orientation == ORIENTATION_HORIZONTAL) {
             int currentX = (int) event.getX(pointerIndex);
             float deltaX = currentX - downX;
-            float mobileViewX = mobileViewStartX + deltaX;
-            mobileView.setTranslationX(mobileViewX);
+            moveFloating(mobileViewStartX + deltaX, itemY);
         } else if (orientation == ORIENTATION_VERTICAL) {
             int currentY = (int) event.getY(pointerIndex);
             float deltaY = currentY - downY;
-            float mobileViewY = mobileViewStartY + deltaY;
-            mobileView.setTranslationY(mobileViewY);
+            moveFloating(itemX, mobileViewStartY + deltaY);
+        } else {
+            float deltaX = (int) event.getX(pointerIndex) - downX;
+            float deltaY = (int) event.getY(pointerIndex) - downY;
+            moveFloating(mobileViewStartX + deltaX, mobileViewStartY + deltaY);
+        }
+        if (lowLatencyTracking) {
+            addSamples(event, pointerIndex);
+            drawPredicted();
         }
-
 
         switchViewsIfNeeded();
-        scrollIfNeeded();
+        autoScroller.update();
+        gestureTracker.endSection();
         return true;
     }
 
-    private void switchViewsIfNeeded() {
-        int pos = mobileViewCurrentPos;
-        int abovePos = pos - 1;
-        int belowPos = pos + 1;
+    /**
+     * Feed the predictor with the samples batched in the event since the previous one, and the latest.
+     */
+    private void addSamples(MotionEvent event, int pointerIndex) {
+        for (int h = 0, size = event.getHistorySize(); h < size; h++) {
+            motionPredictor.addSample(event.getHistoricalEventTime(h) * 1000000L,
+                    event.getHistoricalX(pointerIndex, h), event.getHistoricalY(pointerIndex, h));
+        }
+        motionPredictor.addSample(event.getEventTime() * 1000000L, touchX, touchY);
+    }
 
-        View previousView = getViewByPosition(abovePos);
-        View nextView = getViewByPosition(belowPos);
+    /**
+     * Draw the dragged item where the finger should be when the next frame shows, moved along the drag
+     * axis only.
+     */
+    private void drawPredicted() {
+        if (!motionPredictor.predict(System.nanoTime() + frameIntervalNanos)) return;
+        float x = itemX;
+        float y = itemY;
+        if ((orientation & ORIENTATION_HORIZONTAL) != 0) {
+            x += motionPredictor.getPredictedX() - touchX;
+        }
+        if ((orientation & ORIENTATION_VERTICAL) != 0) {
+            y += motionPredictor.getPredictedY() - touchY;
+        }
+        drawFloating(x, y);
+    }
 
+    /**
+     * Move the dragged item to the item under its center, however far it is, in a single move.
+     *
+     * @return true if the dragged item was moved.
+     */
+    private boolean switchViewsIfNeeded() {
+        int pos = mobileViewCurrentPos;
+        int target = findTargetPosition();
+        if (target == RecyclerView.NO_POSITION || target == pos) return false;
+        View targetView = getViewByPosition(target);
+        if (targetView == null) return false;
+        if (DEBUG) {
+            Log.d(LOG_TAG, String.format("Got target view for position = %s, %s", target, targetView));
+        }
+        return doSwitch(targetView, pos, target);
+    }
 
-        if (orientation == ORIENTATION_VERTICAL) {
-            int mobileViewY = (int) mobileView.getY();
-            if (previousView != null && previousView.getY() > -1 && mobileViewY < previousView.getY()) {
-                Log.d(LOG_TAG, String.format("Got previousView with y = %s, for position = %s, %s", previousView.getY(), abovePos, previousView));
-                doSwitch(previousView, pos, abovePos);
-            }
-            if (nextView != null && nextView.getY() > -1 && mobileViewY > nextView.getY()) {
-                Log.d(LOG_TAG, String.format("Got nextView with y = %s, for position = %s, %s", nextView.getY(), belowPos, nextView));
-                doSwitch(nextView, pos, belowPos);
+    /**
+     * Find the item under the center of the dragged item by binary search over the laid out bounds of
+     * the children, sorted along the drag axis. In grid orientation the child index is hit tested.
+     *
+     * @return adapter position of the item, NO_POSITION if the center is not over an item.
+     */
+    private int findTargetPosition() {
+        if (orientation == ORIENTATION_GRID) {
+            View child = childIndex.findChildAt(recyclerView,
+                    itemX + floatingWidth / 2f, itemY + floatingHeight / 2f);
+            return child == null ? RecyclerView.NO_POSITION : recyclerView.getChildAdapterPosition(child);
+        }
+        int count = collectChildBounds();
+        float center = orientation == ORIENTATION_VERTICAL
+                ? itemY + floatingHeight / 2f
+                : itemX + floatingWidth / 2f;
+        // last child starting at or before the center
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (childStarts[middle] <= center) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
             }
-        } else if (orientation == ORIENTATION_HORIZONTAL) {
-            int mobileViewX = (int) mobileView.getX();
-            if (previousView != null && previousView.getX() > -1 && mobileViewX < previousView.getX()) {
-                Log.d(LOG_TAG, String.format("Got previousView with y = %s, for position = %s, %s", previousView.getX(), abovePos, previousView));
-                doSwitch(previousView, pos, abovePos);
+        }
+        if (found == -1 || center >= childEnds[found]) return RecyclerView.NO_POSITION;
+        return childPositions[found];
+    }
+
+    /**
+     * Fill childStarts, childEnds and childPositions with the children that have an adapter position,
+     * sorted by start along the drag axis. Bounds are the laid out ones, item animations are ignored.
+     *
+     * @return number of children collected.
+     */
+    private int collectChildBounds() {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        int childCount = recyclerView.getChildCount();
+        if (childPositions.length < childCount) {
+            childStarts = new int[childCount];
+            childEnds = new int[childCount];
+            childPositions = new int[childCount];
+        }
+        int count = 0;
+        for (int i = 0; i < childCount; i++) {
+            View child = recyclerView.getChildAt(i);
+            int position = recyclerView.getChildAdapterPosition(child);
+            if (position == RecyclerView.NO_POSITION) continue;
+            int start;
+            int end;
+            if (orientation == ORIENTATION_VERTICAL) {
+                start = layoutManager.getDecoratedTop(child);
+                end = layoutManager.getDecoratedBottom(child);
+            } else {
+                start = layoutManager.getDecoratedLeft(child);
+                end = layoutManager.getDecoratedRight(child);
             }
-            if (nextView != null && nextView.getX() > -1 && mobileViewX > nextView.getX()) {
-                Log.d(LOG_TAG, String.format("Got nextView with y = %s, for position = %s, %s", nextView.getX(), belowPos, nextView));
-                doSwitch(nextView, pos, belowPos);
+            // children are mostly in layout order already, insertion sort is linear then
+            int j = count++;
+            while (j > 0 && childStarts[j - 1] > start) {
+                childStarts[j] = childStarts[j - 1];
+                childEnds[j] = childEnds[j - 1];
+                childPositions[j] = childPositions[j - 1];
+                j--;
             }
+            childStarts[j] = start;
+            childEnds[j] = end;
+            childPositions[j] = position;
         }
-
-
+        return count;
     }
 
-    private void doSwitch(final View switchView, final int originalViewPos, final int switchViewPos) {
-        View originalView = getViewByPosition(originalViewPos);
+    private boolean doSwitch(final View switchView, final int originalViewPos, final int switchViewPos) {
+        if (!adapter.canMoveItem(originalViewPos, switchViewPos)) return false;
 
+        View originalView = getViewByPosition(originalViewPos);
 
+        // the hidden original view moves with its item, the item animator slides the switched view
         onItemSwitch(recyclerView, originalViewPos, switchViewPos);
 
-        switchView.setVisibility(View.INVISIBLE);
-        originalView.setVisibility(View.VISIBLE);
-
-        if (orientation == ORIENTATION_VERTICAL) {
-            int switchViewTop = switchView.getTop();
-            int originalViewTop = originalView.getTop();
-            int delta = originalViewTop - switchViewTop;
-            originalView.setTranslationY(-delta);
-            originalView.animate().translationYBy(delta).setDuration(MOVE_DURATION);
-        } else if (orientation == ORIENTATION_HORIZONTAL) {
-            int switchViewLeft = switchView.getLeft();
-            int originalViewLeft = originalView.getLeft();
-            int delta = originalViewLeft - switchViewLeft;
-            originalView.setTranslationX(-delta);
-            originalView.animate().translationXBy(delta).setDuration(MOVE_DURATION);
+        // keep the layout anchored while the first visible item moves, like ItemTouchHelper does
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (originalView != null && layoutManager instanceof ItemTouchHelper.ViewDropHandler) {
+            ((ItemTouchHelper.ViewDropHandler) layoutManager).prepareForDrop(originalView, switchView,
+                    (int) itemX, (int) itemY);
         }
 
-
         mobileViewCurrentPos = switchViewPos;
-
+        gestureTracker.onSwitch();
+        return true;
     }
 
     private boolean up(MotionEvent event) {
+        if (dragging && deferredCommit) {
+            adapter.commitDeferredMove();
+        }
         endDrag();
         return false;
     }
 
     private boolean cancel(MotionEvent event) {
+        if (dragging && deferredCommit) {
+            // the item goes back to where the drag started
+            adapter.cancelDeferredMove();
+            mobileViewCurrentPos = dragStartPos;
+            if (adapter.hasLiftedItems()) {
+                adapter.cancelLift();
+                mobileViewCurrentPos = liftStartPos;
+                dragStartPos = liftStartPos;
+            }
+        }
         endDrag();
         return false;
     }
@@ -321,125 +700,293 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
      * Animate dragged view to it's position.
      */
     private void endDrag() {
-        final View view = getViewByPosition(mobileViewCurrentPos);
-        if (view != null && mobileView != null) {
-            ViewPropertyAnimator animator = mobileView.animate();
-
-            if (orientation == ORIENTATION_VERTICAL) {
-                float y = view.getY();
-                animator.translationY(y).setDuration(MOVE_DURATION);
-            } else if (orientation == ORIENTATION_HORIZONTAL) {
-                float x = view.getX();
-                animator.translationX(x).setDuration(MOVE_DURATION);
+        if (!dragging) return;
+        gestureTracker.beginSection(TRACE_DROP);
+        droppingGesture = gestureTracker.onRelease();
+        autoScroller.stop();
+        final int position = mobileViewCurrentPos;
+        if (adapter.hasLiftedItems()) {
+            int[] liftedSourcePositions = adapter.getLiftedSourcePositions();
+            adapter.dropLifted(position);
+            if (changeJournal != null) {
+                recordBlockMove(liftedSourcePositions, position);
             }
-
-            animator.setListener(new AnimatorListenerAdapter() {
+        } else if (changeJournal != null && position != dragStartPos) {
+            int to = adapter.getSourcePosition(position);
+            if (to != dragStartSourcePos) {
+                changeJournal.recordMove(adapter.getItemId(position), dragStartSourcePos, to);
+            }
+        }
+        final View view = getViewByPosition(position);
+        if (view != null) {
+            final float startX = floatingX;
+            final float startY = floatingY;
+            final float endX = (orientation & ORIENTATION_HORIZONTAL) != 0 ? view.getX() : floatingX;
+            final float endY = (orientation & ORIENTATION_VERTICAL) != 0 ? view.getY() : floatingY;
+            ValueAnimator animator = ValueAnimator.ofFloat(0f, 1f).setDuration(MOVE_DURATION);
+            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    float fraction = animation.getAnimatedFraction();
+                    moveFloating(startX + (endX - startX) * fraction, startY + (endY - startY) * fraction);
+                }
+            });
+            animator.addListener(new AnimatorListenerAdapter() {
                 @Override
                 public void onAnimationEnd(Animator animation) {
-                    view.setVisibility(View.VISIBLE);
-                    if (mobileView != null) {
-                        ViewGroup parent = (ViewGroup) mobileView.getParent();
-                        parent.removeView(mobileView);
-                        draggingThumbnail.recycle();
-                        draggingThumbnail = null;
-                        mobileView = null;
-                        recyclerView.removeCallbacks(autoScroller);
-                    }
+                    finishDrop(view, position);
                 }
             });
+            dropping = true;
             animator.start();
-
+        } else {
+            // scrolled out, nowhere to animate to
+            finishDrop(null, position);
         }
 
         dragging = false;
         mobileViewStartY = -1;
         mobileViewStartX = -1;
         mobileViewCurrentPos = -1;
+        gestureTracker.endSection();
+    }
 
+    /**
+     * Record a dropped block as one move per item, the dragged item first, in backing list positions.
+     * Each item in turn goes right before the first item that is not part of the block and follows it
+     * after the drop, so replaying the moves in order rebuilds the block even when a filter hides items
+     * between the block and the dragged item.
+     *
+     * @param liftedSourcePositions backing list positions of the lifted items before the lift, ascending.
+     * @param position              position of the dragged item after the drop, the block follows it.
+     */
+    private void recordBlockMove(int[] liftedSourcePositions, int position) {
+        int count = liftedSourcePositions.length + 1;
+        int[] before = new int[count];
+        before[0] = dragStartSourcePos;
+        System.arraycopy(liftedSourcePositions, 0, before, 1, count - 1);
+        // an item is placed by the number of items outside the block before it, then by its order among
+        // the block items in that gap; the ones already moved go after the others
+        int[] gap = new int[count];
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            int blockBefore = 0;
+            for (int j = 0; j < count; j++) {
+                if (before[j] < before[i]) blockBefore++;
+            }
+            gap[i] = before[i] - blockBefore;
+            order[i] = before[i];
+        }
+        long moved = Integer.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            // the block is ascending in the backing list after the drop
+            int after = adapter.getSourcePosition(position + i);
+            int from = blockPosition(i, gap, order);
+            gap[i] = after - i;
+            order[i] = ++moved;
+            int to = blockPosition(i, gap, order);
+            if (from != to) {
+                changeJournal.recordMove(adapter.getItemId(position + i), from, to);
+            }
+        }
+    }
+
+    private static int blockPosition(int i, int[] gap, long[] order) {
+        int position = gap[i];
+        for (int j = 0; j < gap.length; j++) {
+            if (j != i && (gap[j] < gap[i] || gap[j] == gap[i] && order[j] < order[i])) position++;
+        }
+        return position;
     }
 
     /**
-     * Implementation usually do 2 things: change positions of items in RecyclerView.Adapter and notify it about changes
+     * Move the dragged item in the adapter. The adapter notifies a move, so no view holder is rebound.
      *
      * @param recyclerView view the item is being dragged in
      * @param from         original (start) drag position within adapter
      * @param to           new drag position withing adapter
      */
     private void onItemSwitch(RecyclerView recyclerView, int from, int to) {
-        adapter.swapPositions(from, to);
-        adapter.notifyItemChanged(to);
+        if (deferredCommit) {
+            adapter.moveItemDeferred(from, to);
+        } else {
+            adapter.moveItem(from, to);
+        }
     }
 
-    private View getViewByPosition(int position) {
-        RecyclerView.ViewHolder viewHolder = recyclerView.findViewHolderForPosition(position);
-        return viewHolder == null ? null : viewHolder.itemView;
+    /**
+     * Move the dragged item, only a redraw when it is drawn by the decoration.
+     */
+    private void moveFloating(float x, float y) {
+        itemX = x;
+        itemY = y;
+        drawFloating(x, y);
     }
 
-
-    private boolean scrollIfNeeded() {
-
-        int hoverViewPosition = 0;
-        int hoverViewSize = 0;
-        int previousBoundary = 0;
-        int nextBoundary = 0;
-
-        if (orientation == ORIENTATION_VERTICAL) {
-            previousBoundary = 0;
-            nextBoundary = recyclerView.getHeight();
-            hoverViewSize = mobileView.getHeight();
-            hoverViewPosition = (int) mobileView.getY();
-        } else if (orientation == ORIENTATION_HORIZONTAL) {
-            previousBoundary = 0;
-            nextBoundary = recyclerView.getWidth();
-            hoverViewSize = mobileView.getWidth();
-            hoverViewPosition = (int) mobileView.getX();
+    private void drawFloating(float x, float y) {
+        floatingX = x;
+        floatingY = y;
+        if (mobileView != null) {
+            mobileView.setTranslationX(x);
+            mobileView.setTranslationY(y);
+        } else if (dragDecoration != null) {
+            dragDecoration.setPosition(x, y);
+            recyclerView.invalidate();
         }
+    }
 
-        if (hoverViewPosition <= previousBoundary && !isScrolling) {
-            isScrolling = true;
-            autoScroller.startScrolling(AutoScroller.START);
-            return true;
-        } else if (hoverViewPosition + hoverViewSize >= nextBoundary && !isScrolling) {
-            isScrolling = true;
-            autoScroller.startScrolling(AutoScroller.END);
-            return true;
-        } else if (hoverViewPosition >= previousBoundary && hoverViewPosition + hoverViewSize <= nextBoundary && isScrolling) {
-            autoScroller.stopScrolling();
-            isScrolling = false;
+    /**
+     * Show the dropped item in its place and release what was used to draw it while dragged.
+     */
+    private void finishDrop(View view, int position) {
+        gestureTracker.beginSection(TRACE_SETTLE);
+        dropping = false;
+        if (view != null) {
+            view.setVisibility(View.VISIBLE);
         }
-        return false;
+        adapter.setItemDragged(position, false);
+        if (mobileView != null) {
+            ViewGroup parent = (ViewGroup) mobileView.getParent();
+            parent.removeView(mobileView);
+            ((ImageView) mobileView).setImageDrawable(null);
+            mobileView = null;
+        }
+        if (dragDecoration != null) {
+            dragDecoration.hide();
+            recyclerView.invalidate();
+        }
+        if (liveHolder != null) {
+            liveHolder.setIsRecyclable(true);
+            liveHolder = null;
+        }
+        if (draggingThumbnail != null) {
+            // the pool of a list detached during the drop was cleared, it should stay empty
+            if (recyclerView.getWindowToken() != null) {
+                bitmapPool.release(draggingThumbnail);
+            } else {
+                draggingThumbnail.recycle();
+            }
+            draggingThumbnail = null;
+        }
+        stopChildIndex();
+        gestureTracker.endSection();
+        gestureTracker.onSettled(droppingGesture);
+    }
+
+    private View getViewByPosition(int position) {
+        RecyclerView.ViewHolder viewHolder = recyclerView.findViewHolderForAdapterPosition(position);
+        return viewHolder == null ? null : viewHolder.itemView;
     }
 
+
     /**
      * Build view which will be used while user performing a drag event.
      *
-     * @param v touched view after a long press.
+     * @param thumbnail bitmap of the touched view, or of the stack of dragged views.
      * @return View which will be used as dragging thumbnail.
      */
-    private View getDraggingView(View v) {
-        //Clear ripple effect to not get into screenshot,
-        // need something more clever here
-        if (v instanceof FrameLayout) {
-            FrameLayout frameLayout = (FrameLayout) v;
-            Drawable foreground = frameLayout.getForeground();
-            if (foreground != null) foreground.setVisible(false, false);
-        } else {
-            if (v.getBackground() != null) v.getBackground().setVisible(false, false);
-        }
+    private View getDraggingView(Bitmap thumbnail) {
+        ImageView imageView = new ImageView(recyclerView.getContext());
+        imageView.setScaleType(ImageView.ScaleType.FIT_XY);
+        imageView.setImageBitmap(thumbnail);
+        return imageView;
+    }
 
-        draggingThumbnail = Bitmap.createBitmap(v.getWidth(), v.getHeight(), Bitmap.Config.RGB_565);
+    /**
+     * Draw the touched view into a pooled bitmap, kept in draggingThumbnail until the drop.
+     *
+     * @param v touched view after a long press.
+     * @return thumbnail of the view.
+     */
+    private Bitmap getDraggingThumbnail(View v) {
+        hideTouchFeedback(v);
+        float scale = bitmapPool.getScale();
+        draggingThumbnail = bitmapPool.acquire(Math.max(1, Math.round(v.getWidth() * scale)),
+                Math.max(1, Math.round(v.getHeight() * scale)));
         Canvas canvas = new Canvas(draggingThumbnail);
+        int saveCount = canvas.save();
+        canvas.scale(scale, scale);
         v.draw(canvas);
+        canvas.restoreToCount(saveCount);
 
         //Drag highlight, usually border
         if (dragHighlight != null) {
             dragHighlight.setBounds(0, 0, draggingThumbnail.getWidth(), draggingThumbnail.getHeight());
             dragHighlight.draw(canvas);
         }
+        return draggingThumbnail;
+    }
 
-        ImageView imageView = new ImageView(recyclerView.getContext());
-        imageView.setImageBitmap(draggingThumbnail);
-        return imageView;
+    /**
+     * @return the touched view then up to MAX_STACKED_VIEWS - 1 other selected children, null padded.
+     */
+    private View[] getStackedViews(View v, int position) {
+        View[] stacked = new View[MAX_STACKED_VIEWS];
+        stacked[0] = v;
+        int count = 1;
+        for (int i = 0, childCount = recyclerView.getChildCount(); i < childCount && count < stacked.length; i++) {
+            View child = recyclerView.getChildAt(i);
+            int childPosition = recyclerView.getChildAdapterPosition(child);
+            if (childPosition != RecyclerView.NO_POSITION && childPosition != position
+                    && adapter.isSelected(childPosition)) {
+                stacked[count++] = child;
+            }
+        }
+        return stacked;
+    }
+
+    /**
+     * Draw the given views as a stack into a pooled bitmap, kept in draggingThumbnail until the drop. Each
+     * view is clipped to the size of the first one, drawn on top; the floating size becomes the stack size.
+     *
+     * @param stacked views from {@link #getStackedViews(View, int)}.
+     * @return thumbnail of the stack.
+     */
+    private Bitmap getStackThumbnail(View[] stacked) {
+        View top = stacked[0];
+        hideTouchFeedback(top);
+        int count = 1;
+        while (count < stacked.length && stacked[count] != null) {
+            count++;
+        }
+        int offset = (int) (STACK_OFFSET_DP * recyclerView.getResources().getDisplayMetrics().density + 0.5f);
+        int width = top.getWidth();
+        int height = top.getHeight();
+        floatingWidth = width + offset * (count - 1);
+        floatingHeight = height + offset * (count - 1);
+
+        float scale = bitmapPool.getScale();
+        draggingThumbnail = bitmapPool.acquire(Math.max(1, Math.round(floatingWidth * scale)),
+                Math.max(1, Math.round(floatingHeight * scale)));
+        Canvas canvas = new Canvas(draggingThumbnail);
+        canvas.scale(scale, scale);
+        // back to front
+        for (int i = count - 1; i >= 0; i--) {
+            int saveCount = canvas.save();
+            canvas.translate(offset * i, offset * i);
+            canvas.clipRect(0, 0, width, height);
+            stacked[i].draw(canvas);
+            canvas.restoreToCount(saveCount);
+        }
+
+        if (dragHighlight != null) {
+            dragHighlight.setBounds(0, 0, width, height);
+            dragHighlight.draw(canvas);
+        }
+        return draggingThumbnail;
+    }
+
+    /**
+     * Clear ripple effect to not get into screenshot, need something more clever here.
+     */
+    private static void hideTouchFeedback(View v) {
+        if (v instanceof FrameLayout) {
+            FrameLayout frameLayout = (FrameLayout) v;
+            Drawable foreground = frameLayout.getForeground();
+            if (foreground != null) foreground.setVisible(false, false);
+        } else {
+            if (v.getBackground() != null) v.getBackground().setVisible(false, false);
+        }
     }
 
     /**
@@ -458,6 +1005,49 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
         gestureDetector = new GestureDetector(recyclerView.getContext(), simpleOnGestureListener);
     }
 
+    /**
+     * Set the pool of dragging thumbnails, for eg. to share it between lists or to change the pixel format
+     * and scale of thumbnails. By default thumbnails are RGB_565 at the size of the item. The pool is
+     * cleared when the RecyclerView is detached from its window; a shared pool only loses the bitmaps
+     * no list is dragging.
+     *
+     * @param bitmapPool pool of thumbnails.
+     */
+    public void setBitmapPool(DragBitmapPool bitmapPool) {
+        this.bitmapPool = bitmapPool;
+    }
+
+    /**
+     * @return pool of dragging thumbnails.
+     */
+    public DragBitmapPool getBitmapPool() {
+        return bitmapPool;
+    }
+
+    /**
+     * Set how the dragged item is drawn, RENDER_MODE_VIEW by default. The decoration and live modes do not
+     * need a FrameLayout parent and move the item without layout; the live mode also skips the thumbnail.
+     *
+     * @param renderMode one of RENDER_MODE_VIEW, RENDER_MODE_DECORATION or RENDER_MODE_LIVE.
+     */
+    public void setRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_VIEW && renderMode != RENDER_MODE_DECORATION && renderMode != RENDER_MODE_LIVE) {
+            throw new IllegalArgumentException("Render mode unknown");
+        }
+        if (dragging || dropping) {
+            throw new IllegalStateException("Render mode cannot change during a drag");
+        }
+        this.renderMode = renderMode;
+        // added once, adding a decoration requests a layout
+        if (renderMode != RENDER_MODE_VIEW && dragDecoration == null) {
+            dragDecoration = new DragDecoration();
+            recyclerView.addItemDecoration(dragDecoration);
+        } else if (renderMode == RENDER_MODE_VIEW && dragDecoration != null) {
+            recyclerView.removeItemDecoration(dragDecoration);
+            dragDecoration = null;
+        }
+    }
+
     /**
      * Enable/disable drag/drop
      *
@@ -469,50 +1059,207 @@ public class RecycleDragDropManager implements RecyclerView.OnItemTouchListener
 
 
     /**
-     * Auto scroller used to scroll the recycler view while dragging.
+     * Set the zone along the start and end edges of RecyclerView where a drag scrolls the list, 64dp by
+     * default.
+     *
+     * @param edgePx size of the edge zone in pixels.
+     */
+    public void setAutoScrollEdge(int edgePx) {
+        this.scrollEdge = edgePx;
+    }
+
+    /**
+     * Draw the dragged item where the finger is predicted to be when the next frame shows, extrapolated
+     * from the touch samples batched in the move events. Hides the lag of the item behind the finger on
+     * fast drags; the drop target is still resolved from the actual touch position. Off by default.
+     *
+     * @param lowLatencyTracking true to draw the dragged item at the predicted position.
+     */
+    public void setLowLatencyTracking(boolean lowLatencyTracking) {
+        this.lowLatencyTracking = lowLatencyTracking;
+    }
+
+    /**
+     * Keep the moves of a drag out of the backing list of the adapter until the drop, which commits them
+     * as a single move and calls {@link RecyclerArrayAdapter#onDeferredMoveCommitted(int, int)}. A
+     * cancelled drag puts the item back without touching the list. Off by default.
+     *
+     * @param deferredCommit true to commit the drag on drop only.
+     */
+    public void setDeferredCommit(boolean deferredCommit) {
+        this.deferredCommit = deferredCommit;
+    }
+
+    /**
+     * Drag all the selected items when a selected item is long pressed. The others are lifted out of the
+     * list, the thumbnail shows a stack of the selected views, and the drop puts them back as one block
+     * right after the touched item, in their order before the drag. Not supported by sorted and paged
+     * adapters, which drag the touched item only. Off by default.
+     *
+     * @param multiDrag true to drag the selection.
+     * @see RecyclerArrayAdapter#liftSelection(int)
+     */
+    public void setMultiDragEnabled(boolean multiDrag) {
+        this.multiDrag = multiDrag;
+    }
+
+    /**
+     * Record the move of each drop in a journal, written off the main thread. Positions are the ones in
+     * the backing list of the adapter, see {@link RecyclerArrayAdapter#getSourcePosition(int)}, so a
+     * move made while a filter is applied is replayed on the whole list.
+     *
+     * @param changeJournal journal, null to stop recording.
+     */
+    public void setChangeJournal(ChangeJournal changeJournal) {
+        this.changeJournal = changeJournal;
+    }
+
+    /**
+     * Report the timings of each drag, see {@link GestureMetrics}. Frames are only followed while a
+     * listener is set.
+     *
+     * @param listener listener, null to stop measuring.
      */
-    private final class AutoScroller implements Runnable {
+    public void setMetricsListener(GestureMetrics.Listener listener) {
+        gestureTracker.setListener(listener);
+    }
+
+    /**
+     * Wrap the phases of a drag in {@link android.support.v4.os.TraceCompat} sections, visible in systrace.
+     *
+     * @param traceEnabled true to add trace sections.
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        gestureTracker.setTraceEnabled(traceEnabled);
+    }
+
+    /**
+     * Set the auto scroll speed with the finger at the very edge, 1200dp per second by default. The speed
+     * is proportional to how deep the finger is in the edge zone, and grows the longer it stays there.
+     *
+     * @param pxPerSecond speed in pixels per second.
+     */
+    public void setAutoScrollSpeed(float pxPerSecond) {
+        this.scrollSpeed = pxPerSecond;
+    }
+
+    /**
+     * Auto scroller used to scroll the recycler view while dragging. Scrolls once per frame by the speed
+     * times the time since the previous frame, and keeps switching the dragged item as the list scrolls
+     * under the finger.
+     */
+    private final class AutoScroller implements FrameScheduler.Callback {
+
+        private final FrameScheduler frameScheduler = new FrameScheduler(this);
 
         /**
-         * Scroll to the start of the recycle view.
+         * Time of the previous frame, 0 before the first frame of a scroll.
          */
-        static final int START = -1;
+        private long lastFrameNanos;
 
         /**
-         * Scroll to the end of the recycle view.
+         * Time the finger entered the edge zone.
          */
-        static final int END = 1;
+        private long dwellStartNanos;
 
         private int direction;
 
-        public AutoScroller() {
+        /**
+         * Fraction of pixel left from the previous frames.
+         */
+        private float remainder;
 
+        /**
+         * Start or stop scrolling as the finger enters or leaves an edge zone.
+         */
+        void update() {
+            if (edgeDepth() == 0) {
+                stop();
+            } else if (!frameScheduler.isScheduled()) {
+                frameScheduler.schedule();
+            }
         }
 
-        public void startScrolling(int direction) {
-            if (direction != START && direction != END) {
-                throw new IllegalArgumentException("Direction unknown");
-            }
-            this.direction = direction;
-            recyclerView.post(this);
+        void stop() {
+            frameScheduler.cancel();
+            lastFrameNanos = 0;
+            direction = 0;
+            remainder = 0;
+        }
 
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            float depth = edgeDepth();
+            int newDirection = depth < 0 ? -1 : 1;
+            if (!dragging || depth == 0 || !canScroll(newDirection)) {
+                stop();
+                return;
+            }
+            if (lastFrameNanos == 0 || newDirection != direction) {
+                // the first frame only sets the clock
+                direction = newDirection;
+                dwellStartNanos = frameTimeNanos;
+                lastFrameNanos = frameTimeNanos;
+                remainder = 0;
+                frameScheduler.schedule();
+                return;
+            }
+            gestureTracker.beginSection(TRACE_AUTO_SCROLL);
+            gestureTracker.onAutoScroll(frameTimeNanos - lastFrameNanos);
+            float elapsed = (frameTimeNanos - lastFrameNanos) / 1e9f;
+            float dwell = (frameTimeNanos - dwellStartNanos) / 1e9f;
+            lastFrameNanos = frameTimeNanos;
+
+            remainder += scrollSpeed * depth * Math.min(MAX_DWELL_FACTOR, 1 + dwell) * elapsed;
+            int delta = (int) remainder;
+            remainder -= delta;
+            if (delta != 0) {
+                if (scrollsVertically()) {
+                    recyclerView.scrollBy(0, delta);
+                } else {
+                    recyclerView.scrollBy(delta, 0);
+                }
+                // the items scrolling under the finger become targets
+                switchViewsIfNeeded();
+            }
+            gestureTracker.endSection();
+            frameScheduler.schedule();
         }
 
-        public void stopScrolling() {
-            recyclerView.removeCallbacks(this);
+        /**
+         * @return how deep the finger is in an edge zone, from 0 outside to 1 at the edge; negative at the
+         * start edge.
+         */
+        private float edgeDepth() {
+            boolean vertical = scrollsVertically();
+            float touch = vertical ? touchY : touchX;
+            int size = vertical ? recyclerView.getHeight() : recyclerView.getWidth();
+            int edge = Math.min(scrollEdge, size / 2);
+            if (edge <= 0) return 0;
+            if (touch < edge) {
+                return -Math.min(1f, (edge - touch) / edge);
+            } else if (touch > size - edge) {
+                return Math.min(1f, (touch - (size - edge)) / edge);
+            }
+            return 0;
         }
 
-        @Override
-        public void run() {
-            if (orientation == ORIENTATION_VERTICAL) {
-                recyclerView.scrollBy(0, direction * scrollAmount);
-                recyclerView.post(this);
-            } else if (orientation == ORIENTATION_HORIZONTAL) {
-                recyclerView.scrollBy(direction * scrollAmount, 0);
-                recyclerView.post(this);
+        /**
+         * @return true to scroll along y: the drag axis, or in grid orientation the scroll axis of the
+         * layout manager.
+         */
+        private boolean scrollsVertically() {
+            if (orientation == ORIENTATION_GRID) {
+                RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+                return layoutManager == null || layoutManager.canScrollVertically();
             }
+            return orientation == ORIENTATION_VERTICAL;
+        }
 
+        private boolean canScroll(int direction) {
+            return scrollsVertically()
+                    ? recyclerView.canScrollVertically(direction)
+                    : recyclerView.canScrollHorizontally(direction);
         }
     }
-
 }
@@ -15,22 +15,216 @@
 
 package com.du.android.recyclerview;
 
+import android.os.Bundle;
+import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.StaggeredGridLayoutManager;
+import android.util.SparseIntArray;
+import android.view.View;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Extension to standard RecyclerView.Adapter that also keep state of selected/activated items.
+ * <p/>
+ * Selection is kept as a set of stable ids, so it follows items that are moved and drops items that are
+ * removed.
+ * <p/>
+ * Changes of some fields of an item, such as its selection, are notified with change flags as payload,
+ * see {@link #refreshItem(int, int)}. Flags of the same item are merged until the next frame, and
+ * {@link #onBindChanges(RecyclerView.ViewHolder, int, int)} rebinds only these fields.
+ * <p/>
+ * The order, the selection and the first visible item can be kept across process death with
+ * {@link #onSaveInstanceState(Bundle)} and {@link #onRestoreInstanceState(Bundle)}.
+ * <p/>
+ * Removes, inserts and moves can be undone with {@link #undo()} once {@link #setUndoCapacity(int)} is set.
+ * <p/>
+ * A drag can leave the backing list untouched until it is dropped, see {@link #moveItemDeferred(int, int)}.
+ * <p/>
+ * Items can be filtered with {@link #filter(CharSequence)}. While a filter is applied, positions taken
+ * and returned by all methods are positions among the shown items.
  *
  * @param <T> Type of the class in this adapter
  * @param <H> - ViewHolder type
  */
 public abstract class RecyclerArrayAdapter<T, H extends RecyclerView.ViewHolder> extends RecyclerView.Adapter<H> {
 
-    ArrayList<T> items;
+    /**
+     * Change flag: the item was selected or deselected.
+     */
+    public static final int CHANGE_SELECTION = 1;
+
+    /**
+     * Change flag: the highlight of the item changed, for eg. a search match.
+     */
+    public static final int CHANGE_HIGHLIGHT = 1 << 1;
+
+    /**
+     * Change flag: the item started or stopped being dragged.
+     */
+    public static final int CHANGE_DRAG_STATE = 1 << 2;
+
+    /**
+     * First change flag free for the fields of the application, use it and the following bits.
+     */
+    public static final int CHANGE_FIRST_USER_FLAG = 1 << 3;
+
+    private static final int BOUND_CHANGES = CHANGE_SELECTION | CHANGE_DRAG_STATE;
+
+    private static final String STATE_ORDER = "RecyclerArrayAdapter.order";
+    private static final String STATE_SELECTION = "RecyclerArrayAdapter.selection";
+    private static final String STATE_ANCHOR_ID = "RecyclerArrayAdapter.anchorId";
+    private static final String STATE_ANCHOR_OFFSET = "RecyclerArrayAdapter.anchorOffset";
+
+    /**
+     * Filtering checks for cancellation every this many items plus one.
+     */
+    private static final int CANCEL_CHECK_MASK = 0xFF;
+
+    List<T> items;
+
+    /**
+     * Notifications recorded while a batch is open.
+     */
+    private final UpdateBatch pendingUpdates = new UpdateBatch();
+
+    private int batchDepth;
+
+    /**
+     * Incremented by every mutation, used to detect changes made while a diff was computed.
+     */
+    private int modCount;
+
+    /**
+     * Incremented by every {@link #submitList(List)} call, results of older submissions are dropped.
+     */
+    private int submitGeneration;
+
+    private KeyExtractor<T> keyExtractor;
+    private LongKeyExtractor<T> longKeyExtractor;
+
+    private StableIdAllocator<T> idAllocator = new StableIdAllocator<T>();
+
+    /**
+     * Deferred move shown over the backing list, overlayFrom is -1 if none.
+     */
+    private int overlayFrom = -1;
+    private int overlayTo;
+
+    /**
+     * Items taken out by {@link #liftSelection(int)} in list order, null if none, with their positions
+     * before the lift.
+     */
+    private List<T> liftedItems;
+    private int[] liftedPositions;
+    private int[] liftedSourcePositions;
+
+    /**
+     * Undo group opened by the lift and closed by the drop, with the mark and number of its remove entries.
+     */
+    private int liftGroup;
+    private int liftMark;
+    private int liftEntries;
+
+    private DiffCallback<T> diffCallback = new DiffCallback<T>() {
+        @Override
+        public boolean areItemsTheSame(T oldItem, T newItem) {
+            if (longKeyExtractor != null) {
+                return longKeyExtractor.getKey(oldItem) == longKeyExtractor.getKey(newItem);
+            }
+            if (keyExtractor != null) {
+                Object oldKey = keyExtractor.getKey(oldItem);
+                return oldKey == null ? keyExtractor.getKey(newItem) == null : oldKey.equals(keyExtractor.getKey(newItem));
+            }
+            // by instance, like the ids: an equal new instance gets a new id
+            return oldItem == newItem;
+        }
+    };
+
+    Executor backgroundExecutor = AdapterExecutors.background();
+
+    /**
+     * Stable ids of selected items.
+     */
+    private LongHashSet selectedIds = new LongHashSet();
+
+    /**
+     * Stable ids of dragged items.
+     */
+    private final LongHashSet draggedIds = new LongHashSet();
+
+    /**
+     * Set by the first drag, from then on full binds also bind the drag state: a view hidden during a
+     * drag may be recycled after it.
+     */
+    private boolean bindDragState;
+
+    /**
+     * Change flags per position, recorded since the last frame.
+     */
+    private final SparseIntArray frameChanges = new SparseIntArray();
+
+    private final FrameScheduler frameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            flushChanges();
+        }
+    });
+
+    private ItemFilter<T> itemFilter;
+
+    /**
+     * Backing list positions of the shown items, null if all items are shown.
+     */
+    private FilterIndex filterIndex;
+
+    /**
+     * Query of the applied filter.
+     */
+    private String filterQuery;
 
-    public RecyclerArrayAdapter(ArrayList<T> items) {
+    /**
+     * Incremented by every {@link #filter(CharSequence)} call, read by filtering in progress to stop early.
+     */
+    private final AtomicInteger filterGeneration = new AtomicInteger();
+
+    /**
+     * RecyclerView the adapter is set to, its first child is the saved scroll anchor.
+     */
+    private RecyclerView recyclerView;
+
+    /**
+     * Scroll anchor restored before the adapter was set to a RecyclerView with a LayoutManager.
+     */
+    private long pendingAnchorId = RecyclerView.NO_ID;
+    private int pendingAnchorOffset;
+
+    private SavedIdArrays savedIdArrays;
+
+    /**
+     * Operations to undo and redo, null unless an undo capacity is set.
+     */
+    private UndoLog undoLog;
+
+    /**
+     * Set while {@link AdapterInstrumentation} is attached.
+     */
+    AdapterInstrumentation instrumentation;
+
+    /**
+     * @param items backing list. ArrayList suits most lists; for lists of many thousands of items that
+     *              are edited by index, {@link ChunkedArrayList} makes inserts, removes and moves
+     *              O(sqrt(n)).
+     */
+    public RecyclerArrayAdapter(List<T> items) {
         super();
         this.items = items;
         setHasStableIds(true);
@@ -38,16 +232,121 @@ public abstract class RecyclerArrayAdapter<T, H extends RecyclerView.ViewHolder>
 
     @Override
     public int getItemCount() {
-        return items.size();
+        return filterIndex == null ? items.size() : filterIndex.size();
     }
 
+    /**
+     * Stable ids are assigned by a {@link StableIdAllocator}: every item gets its own id, which does not
+     * change when the item is edited or moved. Override if the model already has a unique long id.
+     */
     @Override
     public long getItemId(int position) {
-        if (position < 0 || position >= items.size()) {
+        if (position < 0 || position >= getItemCount()) {
             return RecyclerView.NO_ID;
         }
-        return items.get(position).hashCode();
+        return idAllocator.getId(items.get(getSourcePosition(position)));
+    }
 
+    /**
+     * Set how items are identified. By default every instance is a different item; with a key extractor
+     * instances with equal keys share the same stable id, and {@link #submitList(List)} matches items by
+     * key. Needed to keep the selection across {@link #submitList(List)} of new instances, for eg. reloaded
+     * from a database. Must be called before the adapter is set to RecyclerView.
+     *
+     * @param keyExtractor extracts item keys, null to identify items by instance.
+     */
+    public void setKeyExtractor(KeyExtractor<T> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.longKeyExtractor = null;
+        this.idAllocator = new StableIdAllocator<T>(keyExtractor);
+    }
+
+    /**
+     * Like {@link #setKeyExtractor(KeyExtractor)} for a primitive key, for eg. a database row id, which
+     * is not boxed when the id of an item is looked up. Replaces the key extractor set before.
+     *
+     * @param longKeyExtractor extracts item keys, null to identify items by instance.
+     */
+    public void setLongKeyExtractor(LongKeyExtractor<T> longKeyExtractor) {
+        this.keyExtractor = null;
+        this.longKeyExtractor = longKeyExtractor;
+        this.idAllocator = new StableIdAllocator<T>(longKeyExtractor);
+    }
+
+    /**
+     * Binds the selection state after the full bind, and only the selection state when that is the only
+     * change.
+     */
+    @Override
+    public void onBindViewHolder(H holder, int position, List<Object> payloads) {
+        AdapterInstrumentation instrumentation = this.instrumentation;
+        if (instrumentation != null) {
+            int viewType = holder.getItemViewType();
+            long start = instrumentation.beginBind(viewType);
+            bind(holder, position, payloads);
+            instrumentation.endBind(viewType, start);
+        } else {
+            bind(holder, position, payloads);
+        }
+    }
+
+    private void bind(H holder, int position, List<Object> payloads) {
+        int changes = changesOf(payloads);
+        if (changes != 0) {
+            onBindChanges(holder, position, changes);
+            return;
+        }
+        onBindViewHolder(holder, position);
+        onBindSelection(holder, position, isSelected(position));
+        if (bindDragState) {
+            onBindDragState(holder, position, isDragged(position));
+        }
+    }
+
+    /**
+     * Rebind the changed fields of an item, see {@link #refreshItem(int, int)}. Selection and drag state
+     * are bound with {@link #onBindSelection(RecyclerView.ViewHolder, int, boolean)} and
+     * {@link #onBindDragState(RecyclerView.ViewHolder, int, boolean)}; other flags lead to a full bind.
+     * Override to handle the flags of the application and pass the others to super.
+     *
+     * @param holder   bound view holder.
+     * @param position item index.
+     * @param changes  change flags merged since the last bind.
+     */
+    protected void onBindChanges(H holder, int position, int changes) {
+        if ((changes & ~BOUND_CHANGES) != 0) {
+            onBindViewHolder(holder, position);
+            changes |= BOUND_CHANGES;
+        }
+        if ((changes & CHANGE_SELECTION) != 0) {
+            onBindSelection(holder, position, isSelected(position));
+        }
+        if ((changes & CHANGE_DRAG_STATE) != 0) {
+            onBindDragState(holder, position, isDragged(position));
+        }
+    }
+
+    /**
+     * Show the drag state of an item. By default a dragged item is invisible, the drag shows a copy.
+     *
+     * @param holder   bound view holder.
+     * @param position item index.
+     * @param dragged  true if the item is dragged.
+     */
+    protected void onBindDragState(H holder, int position, boolean dragged) {
+        holder.itemView.setVisibility(dragged ? View.INVISIBLE : View.VISIBLE);
+    }
+
+    /**
+     * Show the selection state of an item. Called after every bind, and alone when only the selection of
+     * the item changed. By default the item view is set activated.
+     *
+     * @param holder   bound view holder.
+     * @param position item index.
+     * @param selected true if the item is selected.
+     */
+    protected void onBindSelection(H holder, int position, boolean selected) {
+        holder.itemView.setActivated(selected);
     }
 
     /**
@@ -57,19 +356,599 @@ public abstract class RecyclerArrayAdapter<T, H extends RecyclerView.ViewHolder>
      * @return model.
      */
     public T getItem(int position) {
-        return items.get(position);
+        return items.get(getSourcePosition(position));
+    }
+
+    /**
+     * Map a position to the position of the same item in the backing list, which differ while a filter
+     * is applied or a move is deferred.
+     *
+     * @param position item index.
+     * @return index in the list given to the constructor.
+     */
+    public int getSourcePosition(int position) {
+        if (overlayFrom != -1) {
+            position = positionBeforeDeferredMove(position);
+        }
+        return filterIndex == null ? position : filterIndex.get(position);
+    }
+
+    /**
+     * Set the predicate used by {@link #filter(CharSequence)}.
+     *
+     * @param itemFilter item predicate.
+     */
+    public void setItemFilter(ItemFilter<T> itemFilter) {
+        this.itemFilter = itemFilter;
     }
 
     /**
-     * Swap two items.
+     * Show only the items matching the query.
      * <p/>
-     * private package.
+     * Items are tested on the background executor and the result is applied on the main thread as item
+     * range notifications. When the new query narrows the applied one (see
+     * {@link ItemFilter#isNarrowing(String, String)}), only the shown items are tested again. If this
+     * method is called again before the result is applied, the older filtering is cancelled.
+     * <p/>
+     * Items added while a filter is applied are shown until the next query.
+     *
+     * @param query query passed to the item filter, null to show all items.
+     */
+    public void filter(CharSequence query) {
+        commitDeferredMove();
+        final int generation = filterGeneration.incrementAndGet();
+        if (query == null) {
+            if (filterIndex == null) return;
+            UpdateBatch updates = new UpdateBatch();
+            FilterIndex.computeUpdates(filterIndex, null, items.size(), updates);
+            filterIndex = null;
+            filterQuery = null;
+            clearUndoHistory();
+            dispatchUpdates(updates);
+            return;
+        }
+        if (itemFilter == null) {
+            throw new IllegalStateException("setItemFilter() must be called before filter()");
+        }
+
+        final String queryString = query.toString();
+        final ItemFilter<T> predicate = itemFilter;
+        final int[] candidatePositions;
+        final Object[] candidates;
+        if (filterIndex != null && predicate.isNarrowing(filterQuery, queryString)) {
+            candidatePositions = filterIndex.toArray();
+            candidates = new Object[candidatePositions.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = items.get(candidatePositions[i]);
+            }
+        } else {
+            candidatePositions = null;
+            candidates = items.toArray();
+        }
+        final int expectedModCount = modCount;
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void run() {
+                int[] matched = new int[candidates.length];
+                int count = 0;
+                for (int i = 0; i < candidates.length; i++) {
+                    if ((i & CANCEL_CHECK_MASK) == 0 && filterGeneration.get() != generation) return;
+                    if (predicate.matches((T) candidates[i], queryString)) {
+                        matched[count++] = candidatePositions == null ? i : candidatePositions[i];
+                    }
+                }
+                final FilterIndex result = new FilterIndex(matched, count);
+                AdapterExecutors.mainThread().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != filterGeneration.get()) return;
+                        if (expectedModCount != modCount) {
+                            // items were changed meanwhile, the positions do not apply anymore
+                            filter(queryString);
+                            return;
+                        }
+                        UpdateBatch updates = new UpdateBatch();
+                        FilterIndex.computeUpdates(filterIndex, result, items.size(), updates);
+                        filterIndex = result;
+                        filterQuery = queryString;
+                        clearUndoHistory();
+                        dispatchUpdates(updates);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * @return true if a filter is applied.
+     */
+    public boolean isFiltered() {
+        return filterIndex != null;
+    }
+
+    /**
+     * @param position item index.
+     * @return true if the item is selected.
+     */
+    public boolean isSelected(int position) {
+        return !selectedIds.isEmpty() && selectedIds.contains(getItemId(position));
+    }
+
+    /**
+     * @param id stable id of an item.
+     * @return true if the item with the given id is selected.
+     */
+    public boolean isSelectedId(long id) {
+        return selectedIds.contains(id);
+    }
+
+    /**
+     * Select or deselect an item. Items without stable id can not be selected.
+     *
+     * @param position item index.
+     * @param selected new selection state.
+     */
+    public void setSelected(int position, boolean selected) {
+        long id = getItemId(position);
+        if (id == RecyclerView.NO_ID) return;
+        if (selected ? selectedIds.add(id) : selectedIds.remove(id)) {
+            dispatchSelectionChanged(position, 1);
+        }
+    }
+
+    /**
+     * Invert the selection state of an item.
+     *
+     * @param position item index.
+     */
+    public void toggleSelection(int position) {
+        setSelected(position, !isSelected(position));
+    }
+
+    /**
+     * Select or deselect a range of items, for eg. from the last selected item to the clicked one.
+     * One notification covers the items whose state changed.
      *
-     * @param from src position.
-     * @param to   dest position.
+     * @param position position of the first item.
+     * @param count    number of items.
+     * @param selected new selection state.
+     */
+    public void setRangeSelected(int position, int count, boolean selected) {
+        int first = -1;
+        int last = -1;
+        for (int i = position, end = position + count; i < end; i++) {
+            long id = getItemId(i);
+            if (id == RecyclerView.NO_ID) continue;
+            if (selected ? selectedIds.add(id) : selectedIds.remove(id)) {
+                if (first == -1) first = i;
+                last = i;
+            }
+        }
+        if (first != -1) {
+            dispatchSelectionChanged(first, last - first + 1);
+        }
+    }
+
+    /**
+     * Select all items.
      */
-    void swapPositions(int from, int to) {
-        Collections.swap(items, from, to);
+    public void selectAll() {
+        setRangeSelected(0, getItemCount(), true);
+    }
+
+    /**
+     * Deselect all items. Only the selection state of bound views is rebound.
+     */
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) return;
+        selectedIds.clear();
+        dispatchSelectionChanged(0, getItemCount());
+    }
+
+    /**
+     * @return number of selected items.
+     */
+    public int getSelectedCount() {
+        return selectedIds.size();
+    }
+
+    /**
+     * @return stable ids of the selected items, in no particular order.
+     */
+    public long[] getSelectedIds() {
+        return selectedIds.toArray();
+    }
+
+    /**
+     * Mark an item as dragged, see {@link #onBindDragState(RecyclerView.ViewHolder, int, boolean)}.
+     *
+     * @param position item index.
+     * @param dragged  new drag state.
+     */
+    public void setItemDragged(int position, boolean dragged) {
+        long id = getItemId(position);
+        if (id == RecyclerView.NO_ID) return;
+        bindDragState |= dragged;
+        if (dragged ? draggedIds.add(id) : draggedIds.remove(id)) {
+            dispatchPartialChange(position, 1, CHANGE_DRAG_STATE);
+            if (undoLog != null) {
+                if (dragged) {
+                    undoLog.beginDrag();
+                } else {
+                    undoLog.endDrag();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param position item index.
+     * @return true if the item is dragged.
+     */
+    public boolean isDragged(int position) {
+        return !draggedIds.isEmpty() && draggedIds.contains(getItemId(position));
+    }
+
+    /**
+     * Start a batch of mutations. Until the matching {@link #commit()} every mutation method records its
+     * notification instead of sending it; adjacent operations are merged into range notifications.
+     * Batches may be nested, notifications are sent when the outermost batch is committed. The
+     * mutations of a batch are undone together.
+     * <p/>
+     * Use something like this:
+     * <pre>
+     * {@code
+     * adapter.beginBatch();
+     * for (SwipeToDismissTouchListener.PendingDismissData data : dismissData) {
+     *     adapter.removeItem(data.position);
+     * }
+     * adapter.commit();
+     * }
+     * </pre>
+     */
+    public void beginBatch() {
+        if (batchDepth == 0) {
+            // recorded positions are about to be shifted by the batch
+            flushChanges();
+            if (undoLog != null) undoLog.beginGroup();
+        }
+        batchDepth++;
+    }
+
+    /**
+     * Close the batch opened by {@link #beginBatch()} and send the recorded notifications.
+     */
+    public void commit() {
+        if (batchDepth == 0) {
+            throw new IllegalStateException("commit() called without beginBatch()");
+        }
+        if (--batchDepth == 0) {
+            if (undoLog != null) undoLog.endGroup();
+            pendingUpdates.dispatch(this);
+        }
+    }
+
+    /**
+     * @return true if a batch is open.
+     */
+    public boolean isBatching() {
+        return batchDepth > 0;
+    }
+
+    /**
+     * Append item at the end of the list.
+     *
+     * @param item item to add.
+     */
+    public void addItem(T item) {
+        addItem(getItemCount(), item);
+    }
+
+    /**
+     * Insert item at the given position.
+     *
+     * @param position position of the new item.
+     * @param item     item to add.
+     */
+    public void addItem(int position, T item) {
+        commitDeferredMove();
+        if (undoLog != null) undoLog.insert(position, new Object[]{item});
+        int sourcePosition = getInsertPosition(position);
+        items.add(sourcePosition, item);
+        if (filterIndex != null) filterIndex.insert(position, sourcePosition, 1);
+        dispatchInserted(position, 1);
+    }
+
+    /**
+     * Insert items at the given position.
+     *
+     * @param position position of the first new item.
+     * @param newItems items to add.
+     */
+    public void addItems(int position, Collection<? extends T> newItems) {
+        commitDeferredMove();
+        if (undoLog != null) undoLog.insert(position, newItems.toArray());
+        insertItems(position, newItems);
+    }
+
+    /**
+     * Replace item at the given position.
+     *
+     * @param position item index.
+     * @param item     new item.
+     */
+    public void setItem(int position, T item) {
+        commitDeferredMove();
+        T oldItem = items.set(getSourcePosition(position), item);
+        idAllocator.replace(oldItem, item);
+        dispatchChanged(position, 1);
+    }
+
+    /**
+     * Notify that item at the given position has changed in place.
+     *
+     * @param position item index.
+     */
+    public void refreshItem(int position) {
+        dispatchChanged(position, 1);
+    }
+
+    /**
+     * Notify that some fields of the item at the given position have changed. The item is rebound with
+     * {@link #onBindChanges(RecyclerView.ViewHolder, int, int)} instead of a full bind. Changes of the same
+     * item are merged until the next frame, adjacent items with the same changes are notified as a range.
+     * <p/>
+     * Use {@link #refreshItem(int)} if the sort key of a {@link SortedRecyclerArrayAdapter} changed.
+     *
+     * @param position item index.
+     * @param changes  change flags, CHANGE_* or flags of the application from
+     *                 {@link #CHANGE_FIRST_USER_FLAG} on; 0 for a full bind.
+     */
+    public void refreshItem(int position, int changes) {
+        if (changes == 0) {
+            refreshItem(position);
+        } else {
+            dispatchPartialChange(position, 1, changes);
+        }
+    }
+
+    /**
+     * Move item to a new position, shifting the items in between. RecyclerView is notified with a single
+     * move, so no view holder is rebound.
+     *
+     * @param from current position of the item.
+     * @param to   new position of the item.
+     */
+    public void moveItem(int from, int to) {
+        if (from == to) return;
+        commitDeferredMove();
+        if (undoLog != null) undoLog.move(from, to);
+        moveShownItem(from, to);
+    }
+
+    /**
+     * Move item like {@link #moveItem(int, int)}, but leave the backing list untouched: positions are
+     * remapped by an overlay until {@link #commitDeferredMove()} applies the move to the list, or
+     * {@link #cancelDeferredMove()} moves the item back. RecyclerView is notified of every move.
+     * <p/>
+     * Consecutive deferred moves of the same item add up to a single move, so a drag writes the backing
+     * list once. Any other mutation commits the deferred move first.
+     *
+     * @param from current position of the item.
+     * @param to   new position of the item.
+     */
+    public void moveItemDeferred(int from, int to) {
+        if (from == to) return;
+        if (overlayFrom != -1 && from != overlayTo) {
+            commitDeferredMove();
+        }
+        if (overlayFrom == -1) {
+            overlayFrom = from;
+        }
+        overlayTo = to;
+        if (overlayFrom == overlayTo) {
+            // back to its place
+            overlayFrom = -1;
+        }
+        dispatchMoved(from, to);
+    }
+
+    /**
+     * Apply the deferred move to the backing list, then call
+     * {@link #onDeferredMoveCommitted(int, int)}. RecyclerView already shows the move, it is not notified.
+     */
+    public void commitDeferredMove() {
+        if (overlayFrom == -1) return;
+        int from = overlayFrom;
+        int to = overlayTo;
+        overlayFrom = -1;
+        if (undoLog != null) undoLog.move(from, to);
+        moveInList(getSourcePosition(from), getSourcePosition(to));
+        if (filterIndex != null) filterIndex.move(from, to);
+        modCount++;
+        onDeferredMoveCommitted(from, to);
+    }
+
+    /**
+     * Drop the deferred move, the item is moved back to its place. The backing list is not touched.
+     */
+    public void cancelDeferredMove() {
+        if (overlayFrom == -1) return;
+        int from = overlayFrom;
+        overlayFrom = -1;
+        dispatchMoved(overlayTo, from);
+    }
+
+    /**
+     * @return true if a move is deferred.
+     */
+    public boolean hasDeferredMove() {
+        return overlayFrom != -1;
+    }
+
+    /**
+     * Called once a deferred move is applied to the backing list, for eg. to write the new order to a
+     * database. Does nothing by default.
+     *
+     * @param from position of the item before the move.
+     * @param to   position of the item after the move.
+     */
+    protected void onDeferredMoveCommitted(int from, int to) {
+    }
+
+    /**
+     * Take the selected items other than the one at the given position out of the list, so they are
+     * dragged along with it as a block. Each run of adjacent lifted items is removed with one range
+     * notification. The lifted items keep their ids and stay selected, {@link #dropLifted(int)} or
+     * {@link #cancelLift()} puts them back.
+     * <p/>
+     * The lift, the moves of the dragged item and the drop are undone as one operation.
+     *
+     * @param position position of the dragged item.
+     * @return position of the dragged item once the others are lifted.
+     */
+    public int liftSelection(int position) {
+        if (liftedItems != null) {
+            throw new IllegalStateException("Items are already lifted");
+        }
+        commitDeferredMove();
+        if (selectedIds.isEmpty()) return position;
+        int count = getItemCount();
+        int[] positions = new int[selectedIds.size()];
+        int lifted = 0;
+        for (int i = 0; i < count && lifted < positions.length; i++) {
+            if (i != position && selectedIds.contains(getItemId(i))) {
+                positions[lifted++] = i;
+            }
+        }
+        if (lifted == 0) return position;
+
+        liftedPositions = Arrays.copyOf(positions, lifted);
+        liftedSourcePositions = new int[lifted];
+        liftedItems = new ArrayList<T>(lifted);
+        int before = 0;
+        for (int i = 0; i < lifted; i++) {
+            liftedSourcePositions[i] = getSourcePosition(liftedPositions[i]);
+            liftedItems.add(getItem(liftedPositions[i]));
+            if (liftedPositions[i] < position) before++;
+        }
+        // the group is closed by the drop, batches in between nest in it
+        if (undoLog != null) liftGroup = undoLog.beginGroup();
+        liftEntries = 0;
+        // last run first, so the positions of the others still hold
+        int end = lifted;
+        while (end > 0) {
+            int start = end - 1;
+            while (start > 0 && liftedPositions[start - 1] == liftedPositions[start] - 1) {
+                start--;
+            }
+            if (undoLog != null) {
+                undoLog.remove(liftedPositions[start], liftedItems.subList(start, end).toArray());
+                liftEntries++;
+            }
+            liftRange(liftedPositions[start], end - start);
+            end = start;
+        }
+        if (undoLog != null) liftMark = undoLog.mark();
+        return position - before;
+    }
+
+    /**
+     * Put the lifted items back as one block right after the item at the given position, with one
+     * insert notification. The block keeps the order the items had before the lift.
+     *
+     * @param position position of the dragged item.
+     */
+    public void dropLifted(int position) {
+        if (liftedItems == null) return;
+        commitDeferredMove();
+        List<T> lifted = liftedItems;
+        liftedItems = null;
+        liftedPositions = null;
+        liftedSourcePositions = null;
+        if (undoLog != null) undoLog.insert(position + 1, lifted.toArray());
+        insertItems(position + 1, lifted);
+        if (undoLog != null) undoLog.endGroup();
+    }
+
+    /**
+     * Put the lifted items back at their positions before the lift, for eg. when the drag is cancelled.
+     * The dragged item should be back at its place first, the lift is then dropped from the undo history
+     * unless other operations were recorded since.
+     */
+    public void cancelLift() {
+        if (liftedItems == null) return;
+        commitDeferredMove();
+        List<T> lifted = liftedItems;
+        int[] positions = liftedPositions;
+        liftedItems = null;
+        liftedPositions = null;
+        liftedSourcePositions = null;
+        // or recorded back, so later entries of the group still undo in order
+        boolean discarded = undoLog != null && undoLog.discardGroup(liftGroup, liftMark, liftEntries);
+        // first run first, the positions are the ones after the inserts before them
+        int start = 0;
+        while (start < positions.length) {
+            int end = start + 1;
+            while (end < positions.length && positions[end] == positions[end - 1] + 1) {
+                end++;
+            }
+            List<T> run = lifted.subList(start, end);
+            if (undoLog != null && !discarded) undoLog.insert(positions[start], run.toArray());
+            insertItems(positions[start], run);
+            start = end;
+        }
+        if (undoLog != null) undoLog.endGroup();
+    }
+
+    /**
+     * @return true if items are lifted by {@link #liftSelection(int)} and not dropped yet.
+     */
+    public boolean hasLiftedItems() {
+        return liftedItems != null;
+    }
+
+    /**
+     * @return backing list positions the lifted items had before the lift, ascending, or null if none
+     * are lifted.
+     */
+    int[] getLiftedSourcePositions() {
+        return liftedSourcePositions;
+    }
+
+    /**
+     * Remove shown items without releasing their ids or selection, they come back with the drop.
+     */
+    private void liftRange(int position, int count) {
+        if (filterIndex != null) {
+            for (int i = position + count - 1; i >= position; i--) {
+                items.remove(filterIndex.get(i));
+            }
+            filterIndex.remove(position, count);
+        } else {
+            items.subList(position, position + count).clear();
+        }
+        dispatchRemoved(position, count);
+    }
+
+    private void moveShownItem(int from, int to) {
+        int sourceFrom = getSourcePosition(from);
+        int sourceTo = getSourcePosition(to);
+        moveInList(sourceFrom, sourceTo);
+        if (filterIndex != null) filterIndex.move(from, to);
+        dispatchMoved(from, to);
+    }
+
+    /**
+     * Tell if an item may be moved, for eg. by drag and drop. Always true by default.
+     *
+     * @param from current position of the item.
+     * @param to   new position of the item.
+     * @return false to refuse the move.
+     */
+    public boolean canMoveItem(int from, int to) {
+        return true;
     }
 
     /**
@@ -78,6 +957,675 @@ public abstract class RecyclerArrayAdapter<T, H extends RecyclerView.ViewHolder>
      * @param pos position of the item to remove.
      */
     public void removeItem(int pos) {
-        items.remove(pos);
+        commitDeferredMove();
+        if (undoLog != null) undoLog.remove(pos, new Object[]{items.get(getSourcePosition(pos))});
+        deselectRange(pos, 1);
+        idAllocator.release(items.remove(getSourcePosition(pos)));
+        if (filterIndex != null) filterIndex.remove(pos, 1);
+        dispatchRemoved(pos, 1);
+    }
+
+    /**
+     * Remove a range of items.
+     *
+     * @param position position of the first item to remove.
+     * @param count    number of items to remove.
+     */
+    public void removeItems(int position, int count) {
+        commitDeferredMove();
+        if (undoLog != null) {
+            Object[] removed = new Object[count];
+            for (int i = 0; i < count; i++) {
+                removed[i] = items.get(getSourcePosition(position + i));
+            }
+            undoLog.remove(position, removed);
+        }
+        removeShownItems(position, count);
+    }
+
+    private void removeShownItems(int position, int count) {
+        deselectRange(position, count);
+        if (filterIndex != null) {
+            // shown items are not adjacent in the backing list
+            for (int i = position + count - 1; i >= position; i--) {
+                idAllocator.release(items.remove(filterIndex.get(i)));
+            }
+            filterIndex.remove(position, count);
+            dispatchRemoved(position, count);
+            return;
+        }
+        List<T> removed = items.subList(position, position + count);
+        for (int i = 0; i < count; i++) {
+            idAllocator.release(removed.get(i));
+        }
+        removed.clear();
+        dispatchRemoved(position, count);
+    }
+
+    /**
+     * Keep the last operations so they can be undone, see {@link #undo()}. Removed items are referenced
+     * until their operation is dropped from the log.
+     * <p/>
+     * Inserts, removes and moves are recorded; the moves of one drag with {@link RecycleDragDropManager}
+     * are recorded as a single move. Other changes of positions, like {@link #submitList(List)}, a filter
+     * or a change of sort key, clear the log.
+     *
+     * @param capacity number of operations kept, 0 to disable undo.
+     */
+    public void setUndoCapacity(int capacity) {
+        undoLog = capacity > 0 ? new UndoLog(capacity) : null;
+    }
+
+    /**
+     * @return true if there is an operation to undo.
+     */
+    public boolean canUndo() {
+        return undoLog != null && undoLog.canUndo();
+    }
+
+    /**
+     * @return true if there is an undone operation to redo.
+     */
+    public boolean canRedo() {
+        return undoLog != null && undoLog.canRedo();
+    }
+
+    /**
+     * Undo the last operation, or all operations of the last batch. RecyclerView gets one range
+     * notification per undone operation, restored items come back with an insert animation.
+     *
+     * @return false if there was nothing to undo.
+     */
+    public boolean undo() {
+        if (!canUndo()) return false;
+        commitDeferredMove();
+        int group = undoLog.getGroup(undoLog.peekUndo());
+        beginBatch();
+        while (undoLog.canUndo() && undoLog.getGroup(undoLog.peekUndo()) == group) {
+            int slot = undoLog.popUndo();
+            int position = undoLog.getPosition(slot);
+            switch (undoLog.getType(slot)) {
+                case UndoLog.TYPE_INSERT:
+                    removeShownItems(position, undoLog.getItems(slot).length);
+                    break;
+                case UndoLog.TYPE_REMOVE:
+                    insertItems(position, undoLog.getItems(slot));
+                    break;
+                default:
+                    moveShownItem(undoLog.getTarget(slot), position);
+                    break;
+            }
+        }
+        commit();
+        return true;
+    }
+
+    /**
+     * Redo the last undone operation, or all operations of the last undone batch.
+     *
+     * @return false if there was nothing to redo.
+     */
+    public boolean redo() {
+        if (!canRedo()) return false;
+        commitDeferredMove();
+        int group = undoLog.getGroup(undoLog.peekRedo());
+        beginBatch();
+        while (undoLog.canRedo() && undoLog.getGroup(undoLog.peekRedo()) == group) {
+            int slot = undoLog.popRedo();
+            int position = undoLog.getPosition(slot);
+            switch (undoLog.getType(slot)) {
+                case UndoLog.TYPE_INSERT:
+                    insertItems(position, undoLog.getItems(slot));
+                    break;
+                case UndoLog.TYPE_REMOVE:
+                    removeShownItems(position, undoLog.getItems(slot).length);
+                    break;
+                default:
+                    moveShownItem(position, undoLog.getTarget(slot));
+                    break;
+            }
+        }
+        commit();
+        return true;
+    }
+
+    /**
+     * Forget all operations to undo and redo.
+     */
+    public void clearUndoHistory() {
+        if (undoLog != null) undoLog.clear();
+    }
+
+    /**
+     * Set the callback used by {@link #submitList(List)} to match old and new items. By default items
+     * are matched by key if a {@link KeyExtractor} or {@link LongKeyExtractor} is set, by instance
+     * otherwise, and their contents are compared with equals(). Items matched here but with different
+     * keys still get new ids and lose their selection, see {@link #setKeyExtractor(KeyExtractor)}.
+     *
+     * @param diffCallback item comparison.
+     */
+    public void setDiffCallback(DiffCallback<T> diffCallback) {
+        this.diffCallback = diffCallback;
+    }
+
+    /**
+     * Set the executor used for work that must not run on the main thread, such as list diffs.
+     * By default a single low priority thread shared by all adapters is used.
+     *
+     * @param executor background executor.
+     */
+    public void setBackgroundExecutor(Executor executor) {
+        this.backgroundExecutor = executor;
+    }
+
+    /**
+     * Replace the content of the adapter with the given list.
+     * <p/>
+     * The difference between the current and the new list is computed on the background executor and
+     * applied on the main thread as item range notifications, so visible rows animate and unchanged rows
+     * are not rebound. If this method is called again before the result is applied, the older result is
+     * dropped.
+     * <p/>
+     * The given list must not be modified after it is submitted. If a filter is applied, it is applied to
+     * the new list as well.
+     *
+     * @param newList new content of the adapter.
+     */
+    public void submitList(final List<T> newList) {
+        if (newList == items) {
+            throw new IllegalArgumentException("Submitted list must not be the list backing the adapter");
+        }
+        commitDeferredMove();
+        final int generation = ++submitGeneration;
+
+        if (filterIndex == null && (items.isEmpty() || newList.isEmpty())) {
+            // nothing to match, no need to go to the background
+            int oldSize = items.size();
+            items.clear();
+            items.addAll(newList);
+            retainSelection();
+            idAllocator.retainAll(items);
+            clearUndoHistory();
+            if (oldSize > 0) dispatchRemoved(0, oldSize);
+            if (!newList.isEmpty()) dispatchInserted(0, newList.size());
+            return;
+        }
+
+        final List<T> oldSnapshot;
+        if (filterIndex == null) {
+            oldSnapshot = new ArrayList<T>(items);
+        } else {
+            oldSnapshot = new ArrayList<T>(filterIndex.size());
+            for (int i = 0, n = filterIndex.size(); i < n; i++) {
+                oldSnapshot.add(items.get(filterIndex.get(i)));
+            }
+        }
+        final int expectedModCount = modCount;
+        final DiffCallback<T> callback = diffCallback;
+        final ItemFilter<T> predicate = filterIndex == null ? null : itemFilter;
+        final String query = filterQuery;
+        backgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> newShown = newList;
+                FilterIndex newIndex = null;
+                if (predicate != null) {
+                    newShown = new ArrayList<T>();
+                    int[] matched = new int[newList.size()];
+                    for (int i = 0, n = newList.size(); i < n; i++) {
+                        T item = newList.get(i);
+                        if (predicate.matches(item, query)) {
+                            matched[newShown.size()] = i;
+                            newShown.add(item);
+                        }
+                    }
+                    newIndex = new FilterIndex(matched, newShown.size());
+                }
+                final FilterIndex shown = newIndex;
+                final UpdateBatch updates = new UpdateBatch();
+                ListDiff.computeUpdates(oldSnapshot, newShown, callback, updates);
+                AdapterExecutors.mainThread().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != submitGeneration) return;
+                        if (expectedModCount != modCount) {
+                            // the list was mutated meanwhile, the result does not apply anymore
+                            submitList(newList);
+                            return;
+                        }
+                        items.clear();
+                        items.addAll(newList);
+                        filterIndex = shown;
+                        retainSelection();
+                        clearUndoHistory();
+                        if (idAllocator.size() > items.size() * 2) {
+                            // ids of items that were diffed away
+                            idAllocator.retainAll(items);
+                        }
+                        dispatchUpdates(updates);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(RecyclerView recyclerView) {
+        this.recyclerView = recyclerView;
+        if (pendingAnchorId != RecyclerView.NO_ID) {
+            scrollToAnchor();
+        }
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(RecyclerView recyclerView) {
+        if (this.recyclerView == recyclerView) {
+            this.recyclerView = null;
+        }
+    }
+
+    /**
+     * Save the order of the items, the selection and the first visible item as arrays of stable ids.
+     * Call it from onSaveInstanceState() of the activity or fragment.
+     * <p/>
+     * The ids are those of {@link #getItemId(int)}. To find the items again after the process is restarted,
+     * it must return ids of the model instead of the ids assigned by default. While a filter is applied
+     * only the order of the shown items is saved. Ids of large lists are saved to a file in the cache
+     * directory instead of the Bundle.
+     *
+     * @param outState state of the activity or fragment.
+     */
+    public void onSaveInstanceState(Bundle outState) {
+        if (savedIdArrays == null) {
+            savedIdArrays = new SavedIdArrays();
+        }
+        File cacheDir = recyclerView == null ? null : recyclerView.getContext().getCacheDir();
+        long[] order = new long[getItemCount()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = getItemId(i);
+        }
+        savedIdArrays.put(outState, STATE_ORDER, order, cacheDir);
+        savedIdArrays.put(outState, STATE_SELECTION, selectedIds.toArray(), cacheDir);
+
+        if (recyclerView == null || recyclerView.getChildCount() == 0) return;
+        View anchor = recyclerView.getChildAt(0);
+        // not from RecyclerView, which has no ids without stable ids, for eg. with paged adapters
+        long anchorId = getItemId(recyclerView.getChildAdapterPosition(anchor));
+        // a placeholder or a removed item can not be found again
+        if (anchorId == RecyclerView.NO_ID) return;
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        outState.putLong(STATE_ANCHOR_ID, anchorId);
+        outState.putInt(STATE_ANCHOR_OFFSET, layoutManager.canScrollHorizontally()
+                ? layoutManager.getDecoratedLeft(anchor) - layoutManager.getPaddingLeft()
+                : layoutManager.getDecoratedTop(anchor) - layoutManager.getPaddingTop());
+    }
+
+    /**
+     * Restore the state saved by {@link #onSaveInstanceState(Bundle)}, once the items are loaded again.
+     * Call it from onRestoreInstanceState() of the activity or onViewStateRestored() of the fragment,
+     * after RecyclerView restored its own state, so the saved first item wins over
+     * the position RecyclerView saved.
+     * <p/>
+     * Items are put back in the saved order in linear time; items that were not saved keep their place.
+     * The order is not restored while a filter is applied. The first visible item is scrolled back to its
+     * offset by id, only the items around it are bound.
+     *
+     * @param savedState state of the activity or fragment, may be null.
+     */
+    public void onRestoreInstanceState(Bundle savedState) {
+        if (savedState == null) return;
+        if (batchDepth > 0) {
+            throw new IllegalStateException("onRestoreInstanceState() called during a batch");
+        }
+        commitDeferredMove();
+        boolean reordered = false;
+        long[] order = SavedIdArrays.get(savedState, STATE_ORDER);
+        if (order != null && filterIndex == null && restoreOrder(order)) {
+            reordered = true;
+            modCount++;
+            clearUndoHistory();
+            flushChanges();
+            notifyDataSetChanged();
+        }
+
+        long[] selection = SavedIdArrays.get(savedState, STATE_SELECTION);
+        if (selection != null) {
+            selectedIds = new LongHashSet();
+            for (long id : selection) {
+                selectedIds.add(id);
+            }
+            retainSelection();
+            if (!reordered) {
+                dispatchSelectionChanged(0, getItemCount());
+            }
+        }
+
+        if (savedState.getLong(STATE_ANCHOR_ID, RecyclerView.NO_ID) != RecyclerView.NO_ID) {
+            pendingAnchorId = savedState.getLong(STATE_ANCHOR_ID);
+            pendingAnchorOffset = savedState.getInt(STATE_ANCHOR_OFFSET);
+            if (recyclerView != null) {
+                scrollToAnchor();
+            }
+        }
+    }
+
+    /**
+     * Put the items in the given order of ids. Items whose id is not in the order keep their place, the
+     * others fill the remaining places in the given order.
+     *
+     * @param order saved ids.
+     * @return true if the list changed.
+     */
+    boolean restoreOrder(long[] order) {
+        LongIntMap ranks = new LongIntMap(order.length);
+        for (int i = 0; i < order.length; i++) {
+            if (order[i] != RecyclerView.NO_ID) {
+                ranks.putIfAbsent(order[i], i);
+            }
+        }
+        int[] sourceByRank = new int[order.length];
+        Arrays.fill(sourceByRank, -1);
+        int[] places = new int[Math.min(items.size(), ranks.size())];
+        int placeCount = 0;
+        for (int i = 0, n = items.size(); i < n; i++) {
+            int rank = ranks.get(getItemId(i), -1);
+            if (rank >= 0 && sourceByRank[rank] == -1) {
+                sourceByRank[rank] = i;
+                places[placeCount++] = i;
+            }
+        }
+        List<T> ranked = new ArrayList<T>(placeCount);
+        for (int source : sourceByRank) {
+            if (source >= 0) {
+                ranked.add(items.get(source));
+            }
+        }
+        boolean changed = false;
+        for (int i = 0; i < placeCount; i++) {
+            T item = ranked.get(i);
+            if (items.get(places[i]) != item) {
+                items.set(places[i], item);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Scroll to the restored anchor item, if it is still in the list.
+     */
+    private void scrollToAnchor() {
+        RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+        if (layoutManager == null) return;
+        long id = pendingAnchorId;
+        pendingAnchorId = RecyclerView.NO_ID;
+        // placeholders have no id either
+        if (id == RecyclerView.NO_ID) return;
+        for (int i = 0, n = getItemCount(); i < n; i++) {
+            if (getItemId(i) != id) continue;
+            if (layoutManager instanceof LinearLayoutManager) {
+                ((LinearLayoutManager) layoutManager).scrollToPositionWithOffset(i, pendingAnchorOffset);
+            } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+                ((StaggeredGridLayoutManager) layoutManager).scrollToPositionWithOffset(i, pendingAnchorOffset);
+            } else {
+                layoutManager.scrollToPosition(i);
+            }
+            return;
+        }
+    }
+
+    private void insertItems(int position, Collection<? extends T> newItems) {
+        int sourcePosition = getInsertPosition(position);
+        items.addAll(sourcePosition, newItems);
+        if (filterIndex != null) filterIndex.insert(position, sourcePosition, newItems.size());
+        dispatchInserted(position, newItems.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void insertItems(int position, Object[] newItems) {
+        insertItems(position, (List<T>) Arrays.asList(newItems));
+    }
+
+    /**
+     * @return backing list position where items inserted at the given position go.
+     */
+    private int getInsertPosition(int position) {
+        if (filterIndex == null || position < filterIndex.size()) {
+            return getSourcePosition(position);
+        }
+        return items.size();
+    }
+
+    /**
+     * Drop removed items from the selection, must be called while they are still in the list.
+     */
+    private void deselectRange(int position, int count) {
+        if (selectedIds.isEmpty()) return;
+        for (int i = position, end = position + count; i < end; i++) {
+            selectedIds.remove(getItemId(i));
+        }
+    }
+
+    /**
+     * Drop items that are not in the list anymore from the selection.
+     */
+    private void retainSelection() {
+        // ids of hidden items can only be resolved through getItemId() once they are shown
+        if (selectedIds.isEmpty() || filterIndex != null) return;
+        LongHashSet retained = new LongHashSet();
+        for (int i = 0, n = items.size(); i < n; i++) {
+            long id = getItemId(i);
+            if (selectedIds.contains(id)) {
+                retained.add(id);
+            }
+        }
+        selectedIds = retained;
+    }
+
+    /**
+     * @return change flags of all payloads, 0 if a full bind is needed.
+     */
+    private static int changesOf(List<Object> payloads) {
+        int changes = 0;
+        for (int i = 0, n = payloads.size(); i < n; i++) {
+            Object payload = payloads.get(i);
+            if (!(payload instanceof Integer)) return 0;
+            changes |= (Integer) payload;
+        }
+        return changes;
+    }
+
+    private void dispatchSelectionChanged(int position, int count) {
+        dispatchPartialChange(position, count, CHANGE_SELECTION);
+    }
+
+    private void dispatchPartialChange(int position, int count, int changes) {
+        if (count <= 0) return;
+        if (batchDepth > 0) {
+            pendingUpdates.change(position, count, changes);
+        } else if (count > 1) {
+            flushChanges();
+            notifyItemRangeChanged(position, count, changes);
+        } else {
+            frameChanges.put(position, frameChanges.get(position) | changes);
+            frameScheduler.schedule();
+        }
+    }
+
+    /**
+     * Send the changes recorded since the last frame, adjacent items with the same changes as a range.
+     * Must be called before positions are shifted.
+     */
+    private void flushChanges() {
+        int size = frameChanges.size();
+        if (size == 0) return;
+        frameScheduler.cancel();
+        int start = frameChanges.keyAt(0);
+        int changes = frameChanges.valueAt(0);
+        int count = 1;
+        for (int i = 1; i < size; i++) {
+            int position = frameChanges.keyAt(i);
+            int positionChanges = frameChanges.valueAt(i);
+            if (position == start + count && positionChanges == changes) {
+                count++;
+                continue;
+            }
+            notifyItemRangeChanged(start, count, changes);
+            start = position;
+            changes = positionChanges;
+            count = 1;
+        }
+        notifyItemRangeChanged(start, count, changes);
+        frameChanges.clear();
+    }
+
+    /**
+     * Insert an item at a backing list position, it is shown even if a filter is applied.
+     */
+    void insertSourceItem(int sourcePosition, T item) {
+        commitDeferredMove();
+        items.add(sourcePosition, item);
+        int position = sourcePosition;
+        if (filterIndex != null) {
+            position = filterIndex.lowerBound(sourcePosition);
+            filterIndex.insert(position, sourcePosition, 1);
+        }
+        if (undoLog != null) undoLog.insert(position, new Object[]{item});
+        dispatchInserted(position, 1);
+    }
+
+    /**
+     * Move an item between backing list positions.
+     */
+    void moveSourceItem(int sourceFrom, int sourceTo) {
+        if (sourceFrom == sourceTo) return;
+        commitDeferredMove();
+        // moved by the sort order, moving it back would break the order
+        clearUndoHistory();
+        moveInList(sourceFrom, sourceTo);
+        if (filterIndex == null) {
+            dispatchMoved(sourceFrom, sourceTo);
+            return;
+        }
+        int from = filterIndex.lowerBound(sourceFrom);
+        int to = filterIndex.moveSource(sourceFrom, sourceTo);
+        if (to != -1) {
+            dispatchMoved(from, to);
+        } else {
+            // hidden item, only positions changed
+            modCount++;
+        }
+    }
+
+    /**
+     * Replace the content of the backing list with merged, which is the current content with new items
+     * at the given ascending positions. The new items are shown even if a filter is applied.
+     */
+    void replaceWithInserted(List<T> merged, int[] insertedPositions, int insertedCount) {
+        commitDeferredMove();
+        clearUndoHistory();
+        items.clear();
+        items.addAll(merged);
+        UpdateBatch updates = new UpdateBatch();
+        if (filterIndex == null) {
+            for (int i = 0; i < insertedCount; i++) {
+                updates.insert(insertedPositions[i], 1);
+            }
+        } else {
+            int[] shown = new int[filterIndex.size() + insertedCount];
+            int count = 0;
+            int inserted = 0;
+            for (int i = 0, n = filterIndex.size(); i <= n; i++) {
+                int oldPosition = i < n ? filterIndex.get(i) : Integer.MAX_VALUE - insertedCount;
+                // new items placed before the shifted old item
+                while (inserted < insertedCount && insertedPositions[inserted] <= oldPosition + inserted) {
+                    updates.insert(count, 1);
+                    shown[count++] = insertedPositions[inserted++];
+                }
+                if (i < n) {
+                    shown[count++] = oldPosition + inserted;
+                }
+            }
+            filterIndex = new FilterIndex(shown, count);
+        }
+        dispatchUpdates(updates);
+    }
+
+    /**
+     * @return position of the item shown at the given position, as if the deferred move was not made.
+     */
+    private int positionBeforeDeferredMove(int position) {
+        if (position == overlayTo) return overlayFrom;
+        if (overlayFrom < overlayTo) {
+            if (position >= overlayFrom && position < overlayTo) return position + 1;
+        } else if (position > overlayTo && position <= overlayFrom) {
+            return position - 1;
+        }
+        return position;
+    }
+
+    private void moveInList(int from, int to) {
+        if (items instanceof PagedList) {
+            // checked before the item is taken out, a placeholder target would lose it
+            ((PagedList<T>) items).move(from, to);
+        } else if (!(items instanceof RandomAccess)) {
+            items.add(to, items.remove(from));
+        } else if (from < to) {
+            Collections.rotate(items.subList(from, to + 1), -1);
+        } else {
+            Collections.rotate(items.subList(to, from + 1), 1);
+        }
+    }
+
+    private void dispatchUpdates(UpdateBatch updates) {
+        modCount++;
+        if (batchDepth > 0) {
+            pendingUpdates.append(updates);
+        } else {
+            flushChanges();
+            updates.dispatch(this);
+        }
+    }
+
+    void dispatchInserted(int position, int count) {
+        if (count <= 0) return;
+        modCount++;
+        if (batchDepth > 0) {
+            pendingUpdates.insert(position, count);
+        } else {
+            flushChanges();
+            notifyItemRangeInserted(position, count);
+        }
+    }
+
+    void dispatchRemoved(int position, int count) {
+        if (count <= 0) return;
+        modCount++;
+        if (batchDepth > 0) {
+            pendingUpdates.remove(position, count);
+        } else {
+            flushChanges();
+            notifyItemRangeRemoved(position, count);
+        }
+    }
+
+    void dispatchChanged(int position, int count) {
+        if (count <= 0) return;
+        modCount++;
+        if (batchDepth > 0) {
+            pendingUpdates.change(position, count);
+        } else {
+            notifyItemRangeChanged(position, count);
+        }
+    }
+
+    void dispatchMoved(int from, int to) {
+        modCount++;
+        if (batchDepth > 0) {
+            pendingUpdates.move(from, to);
+        } else {
+            flushChanges();
+            notifyItemMoved(from, to);
+        }
     }
 }
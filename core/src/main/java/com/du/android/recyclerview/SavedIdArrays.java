@@ -0,0 +1,157 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+import android.os.Bundle;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Saves arrays of ids in a Bundle. Small arrays are stored in the Bundle itself; large ones are written
+ * to a memory mapped file in the cache directory and the Bundle only keeps its path, because the saved
+ * state of a whole activity must fit in one binder transaction of 1MB.
+ * <p/>
+ * A file is deleted once it is read back, or when the same key is saved again. Files of saves that are
+ * never restored, for eg. of an activity finished while in the background, are deleted by a later spill
+ * once older than {@link #MAX_FILE_AGE_MS}; a state restored after that keeps its default order.
+ */
+final class SavedIdArrays {
+
+    private static final String LOG_TAG = "SavedIdArrays";
+
+    /**
+     * Arrays up to this length are kept in the Bundle, 32KB of ids.
+     */
+    static final int MAX_BUNDLED_IDS = 4096;
+
+    private static final int MAGIC = 0x49445331;
+    private static final int HEADER_SIZE = 16;
+    private static final String FILE_SUFFIX = ".path";
+    private static final String STAMP_SUFFIX = ".stamp";
+    private static final String FILE_PREFIX = "saved-ids-";
+    private static final String FILE_EXTENSION = ".bin";
+
+    /**
+     * Age from which a spilled file is considered abandoned, one day.
+     */
+    static final long MAX_FILE_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    private final Map<String, File> files = new HashMap<String, File>();
+
+    /**
+     * @param state    Bundle to save to.
+     * @param key      key of the array.
+     * @param ids      ids to save.
+     * @param cacheDir directory of spilled arrays, null to keep any array in the Bundle.
+     */
+    void put(Bundle state, String key, long[] ids, File cacheDir) {
+        File previous = files.remove(key);
+        if (previous != null && !previous.delete()) {
+            Log.w(LOG_TAG, "Failed to delete " + previous);
+        }
+        if (ids.length > MAX_BUNDLED_IDS && cacheDir != null) {
+            pruneAbandoned(cacheDir);
+            long stamp = System.nanoTime();
+            try {
+                File file = File.createTempFile(FILE_PREFIX, FILE_EXTENSION, cacheDir);
+                write(file, ids, stamp);
+                files.put(key, file);
+                state.putString(key + FILE_SUFFIX, file.getPath());
+                state.putLong(key + STAMP_SUFFIX, stamp);
+                return;
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Failed to spill " + ids.length + " ids, keeping them in the Bundle", e);
+            }
+        }
+        state.putLongArray(key, ids);
+    }
+
+    /**
+     * @param state Bundle saved with {@link #put(Bundle, String, long[], File)}.
+     * @param key   key of the array.
+     * @return saved ids, null if none were saved or the file could not be read.
+     */
+    static long[] get(Bundle state, String key) {
+        long[] ids = state.getLongArray(key);
+        if (ids != null) return ids;
+        String path = state.getString(key + FILE_SUFFIX);
+        if (path == null) return null;
+        File file = new File(path);
+        try {
+            return read(file, state.getLong(key + STAMP_SUFFIX));
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to read saved ids from " + file, e);
+            return null;
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Delete spilled files older than {@link #MAX_FILE_AGE_MS}, left by saves that were never restored.
+     */
+    private static void pruneAbandoned(File cacheDir) {
+        File[] spilled = cacheDir.listFiles();
+        if (spilled == null) return;
+        long oldest = System.currentTimeMillis() - MAX_FILE_AGE_MS;
+        for (File file : spilled) {
+            String name = file.getName();
+            if (name.startsWith(FILE_PREFIX) && name.endsWith(FILE_EXTENSION) && file.lastModified() < oldest
+                    && !file.delete()) {
+                Log.w(LOG_TAG, "Failed to delete " + file);
+            }
+        }
+    }
+
+    private static void write(File file, long[] ids, long stamp) throws IOException {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try {
+            ByteBuffer buffer = output.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + ids.length * 8L);
+            buffer.putInt(MAGIC).putInt(ids.length).putLong(stamp);
+            buffer.asLongBuffer().put(ids);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static long[] read(File file, long stamp) throws IOException {
+        RandomAccessFile input = new RandomAccessFile(file, "r");
+        try {
+            long length = input.length();
+            if (length < HEADER_SIZE) throw new IOException("Truncated header");
+            ByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            int count = buffer.getInt() == MAGIC ? buffer.getInt() : -1;
+            // temp file names are reused once deleted, the stamp tells the saves apart
+            if (count < 0 || buffer.getLong() != stamp || length != HEADER_SIZE + count * 8L) {
+                throw new IOException("Not the saved ids");
+            }
+            long[] ids = new long[count];
+            buffer.asLongBuffer().get(ids);
+            return ids;
+        } finally {
+            input.close();
+        }
+    }
+}
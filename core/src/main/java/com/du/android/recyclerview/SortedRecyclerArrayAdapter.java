@@ -0,0 +1,241 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * RecyclerArrayAdapter that keeps its items sorted by a comparator.
+ * <p/>
+ * New items are placed by binary search. An item whose sort key changed is moved to its new place with
+ * a single move notification, see {@link #refreshItem(int)}. {@link #addAll(Collection)} merges the new
+ * items in linear time and sends one notification per run of adjacent new items.
+ * <p/>
+ * Items can only be moved, for eg. by drag and drop, among items that compare equal, so the order is
+ * kept.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * adapter = new MessagesAdapter(messages, new Comparator<Message>() {
+ *     @Override
+ *     public int compare(Message lhs, Message rhs) {
+ *         return lhs.timestamp < rhs.timestamp ? -1 : (lhs.timestamp == rhs.timestamp ? 0 : 1);
+ *     }
+ * });
+ * adapter.addItem(message);
+ * }
+ * </pre>
+ *
+ * @param <T> Type of the class in this adapter
+ * @param <H> - ViewHolder type
+ */
+public abstract class SortedRecyclerArrayAdapter<T, H extends RecyclerView.ViewHolder> extends RecyclerArrayAdapter<T, H> {
+
+    private final Comparator<? super T> comparator;
+
+    /**
+     * @param items      backing list, sorted in place.
+     * @param comparator item order.
+     */
+    public SortedRecyclerArrayAdapter(List<T> items, Comparator<? super T> comparator) {
+        super(items);
+        this.comparator = comparator;
+        Collections.sort(items, comparator);
+    }
+
+    /**
+     * Insert item at its sorted position, after the items that compare equal.
+     *
+     * @param item item to add.
+     */
+    @Override
+    public void addItem(T item) {
+        insertSourceItem(upperBound(item, 0, items.size()), item);
+    }
+
+    /**
+     * Not supported, positions are given by the comparator. Use {@link #addItem(Object)} instead.
+     */
+    @Override
+    public void addItem(int position, T item) {
+        throw new UnsupportedOperationException("Sorted adapters place items themselves, use addItem(T)");
+    }
+
+    /**
+     * Not supported, positions are given by the comparator. Use {@link #addAll(Collection)} instead.
+     */
+    @Override
+    public void addItems(int position, Collection<? extends T> newItems) {
+        throw new UnsupportedOperationException("Sorted adapters place items themselves, use addAll()");
+    }
+
+    /**
+     * Merge items into the list. The new items are sorted, which is linear if they already are, then
+     * merged with the current ones in a single pass.
+     *
+     * @param newItems items to add.
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(Collection<? extends T> newItems) {
+        if (newItems.isEmpty()) return;
+        // merged from the backing list, which must hold the current order
+        commitDeferredMove();
+        T[] added = (T[]) newItems.toArray();
+        Arrays.sort(added, comparator);
+
+        List<T> merged = new ArrayList<T>(items.size() + added.length);
+        int[] insertedPositions = new int[added.length];
+        int next = 0;
+        for (Iterator<T> iterator = items.iterator(); iterator.hasNext(); ) {
+            T item = iterator.next();
+            // new items go after the equal ones, like addItem()
+            while (next < added.length && comparator.compare(added[next], item) < 0) {
+                insertedPositions[next] = merged.size();
+                merged.add(added[next++]);
+            }
+            merged.add(item);
+        }
+        while (next < added.length) {
+            insertedPositions[next] = merged.size();
+            merged.add(added[next++]);
+        }
+        replaceWithInserted(merged, insertedPositions, added.length);
+    }
+
+    /**
+     * Replace item and move it to its sorted position.
+     *
+     * @param position item index.
+     * @param item     new item.
+     */
+    @Override
+    public void setItem(int position, T item) {
+        super.setItem(position, item);
+        reposition(getSourcePosition(position));
+    }
+
+    /**
+     * Notify that item at the given position has changed in place, and move it if its sort key changed.
+     *
+     * @param position item index.
+     */
+    @Override
+    public void refreshItem(int position) {
+        commitDeferredMove();
+        super.refreshItem(position);
+        reposition(getSourcePosition(position));
+    }
+
+    /**
+     * Move item among the items that compare equal to it.
+     *
+     * @throws IllegalArgumentException if the move would break the order.
+     */
+    @Override
+    public void moveItem(int from, int to) {
+        if (!canMoveItem(from, to)) {
+            throw new IllegalArgumentException("Moving item " + from + " to " + to + " breaks the sort order");
+        }
+        super.moveItem(from, to);
+    }
+
+    /**
+     * @return true if both items compare equal, so do the items in between.
+     */
+    @Override
+    public boolean canMoveItem(int from, int to) {
+        return comparator.compare(getItem(from), getItem(to)) == 0;
+    }
+
+    /**
+     * Not supported, a dropped block would break the order: nothing is lifted and only the given item is
+     * dragged.
+     *
+     * @return the given position.
+     */
+    @Override
+    public int liftSelection(int position) {
+        return position;
+    }
+
+    /**
+     * Replace the content with the given list, sorted. The given list is not modified.
+     *
+     * @param newList new content of the adapter.
+     */
+    @Override
+    public void submitList(List<T> newList) {
+        List<T> sorted = new ArrayList<T>(newList);
+        Collections.sort(sorted, comparator);
+        super.submitList(sorted);
+    }
+
+    /**
+     * The order is given by the comparator, a saved order is not restored.
+     */
+    @Override
+    boolean restoreOrder(long[] order) {
+        return false;
+    }
+
+    /**
+     * @return the comparator ordering the items.
+     */
+    public Comparator<? super T> getComparator() {
+        return comparator;
+    }
+
+    /**
+     * Move the item at the given backing list position, the only one that may be out of order.
+     */
+    private void reposition(int sourcePosition) {
+        T item = items.get(sourcePosition);
+        int target = sourcePosition;
+        if (sourcePosition > 0 && comparator.compare(item, items.get(sourcePosition - 1)) < 0) {
+            target = upperBound(item, 0, sourcePosition);
+        } else if (sourcePosition < items.size() - 1
+                && comparator.compare(item, items.get(sourcePosition + 1)) > 0) {
+            target = upperBound(item, sourcePosition + 1, items.size()) - 1;
+        }
+        moveSourceItem(sourcePosition, target);
+    }
+
+    /**
+     * @return first position in [from, to) whose item is greater than the given one.
+     */
+    private int upperBound(T item, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (comparator.compare(items.get(middle), item) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
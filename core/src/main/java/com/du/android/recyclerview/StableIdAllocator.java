@@ -0,0 +1,286 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import java.util.List;
+
+/**
+ * Assigns stable ids to items. Every new key gets the next id of a counter, so ids never collide and do
+ * not change when the model is edited.
+ * <p/>
+ * Without {@link KeyExtractor} the key is the item itself, compared by identity. Keys are stored in an
+ * open addressing table with linear probing. Looking up the id of a known item does not allocate when
+ * items are keyed by identity or by a {@link LongKeyExtractor}; a {@link KeyExtractor} allocates if it
+ * creates its key, for eg. by boxing a long.
+ *
+ * @param <T> Type of the class in the adapter
+ */
+public final class StableIdAllocator<T> {
+
+    private static final Object NULL_KEY = new Object();
+    /**
+     * Marks the used slots when keys are longs, the keys themselves are in longKeys.
+     */
+    private static final Object LONG_KEY = new Object();
+    private static final int MIN_CAPACITY = 16;
+
+    private final KeyExtractor<T> keyExtractor;
+    private final LongKeyExtractor<T> longKeyExtractor;
+
+    private Object[] keys;
+    private long[] longKeys;
+    private long[] ids;
+    private int mask;
+    private int size;
+    private long nextId;
+
+    /**
+     * Allocator using item identity as key.
+     */
+    public StableIdAllocator() {
+        this(null, null);
+    }
+
+    /**
+     * @param keyExtractor extracts item keys, null to use item identity.
+     */
+    public StableIdAllocator(KeyExtractor<T> keyExtractor) {
+        this(keyExtractor, null);
+    }
+
+    /**
+     * @param longKeyExtractor extracts primitive item keys, null to use item identity.
+     */
+    public StableIdAllocator(LongKeyExtractor<T> longKeyExtractor) {
+        this(null, longKeyExtractor);
+    }
+
+    private StableIdAllocator(KeyExtractor<T> keyExtractor, LongKeyExtractor<T> longKeyExtractor) {
+        this.keyExtractor = keyExtractor;
+        this.longKeyExtractor = longKeyExtractor;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Return the id of the item, assigning a new one if the item was not seen before.
+     *
+     * @param item model.
+     * @return stable id, never {@link android.support.v7.widget.RecyclerView#NO_ID}.
+     */
+    public long getId(T item) {
+        int slot = find(keys, longKeys, mask, item);
+        if (keys[slot] != null) {
+            return ids[slot];
+        }
+        long id = nextId++;
+        put(slot, item, id);
+        return id;
+    }
+
+    /**
+     * Forget the id of the item, for eg. after it was removed from the adapter.
+     * The id is never given to another item.
+     *
+     * @param item model.
+     */
+    public void release(T item) {
+        int slot = find(keys, longKeys, mask, item);
+        if (keys[slot] != null) {
+            removeAt(slot);
+        }
+    }
+
+    /**
+     * Give the id of oldItem to newItem, when an item is replaced by another instance.
+     *
+     * @param oldItem replaced item.
+     * @param newItem new item.
+     */
+    public void replace(T oldItem, T newItem) {
+        if (hasSameKey(oldItem, newItem)) return;
+        int slot = find(keys, longKeys, mask, oldItem);
+        if (keys[slot] == null) return;
+        long id = ids[slot];
+        removeAt(slot);
+        slot = find(keys, longKeys, mask, newItem);
+        if (keys[slot] == null) {
+            put(slot, newItem, id);
+        }
+    }
+
+    /**
+     * Forget ids of all items that are not in the given list, keeping ids of the others.
+     *
+     * @param items items to keep.
+     */
+    public void retainAll(List<T> items) {
+        Object[] oldKeys = keys;
+        long[] oldLongKeys = longKeys;
+        long[] oldIds = ids;
+        int oldMask = mask;
+        allocate(capacityFor(items.size()));
+        for (int i = 0, n = items.size(); i < n; i++) {
+            T item = items.get(i);
+            int oldSlot = find(oldKeys, oldLongKeys, oldMask, item);
+            if (oldKeys[oldSlot] == null) continue;
+            int slot = find(keys, longKeys, mask, item);
+            if (keys[slot] == null) {
+                keys[slot] = oldKeys[oldSlot];
+                if (longKeys != null) longKeys[slot] = oldLongKeys[oldSlot];
+                ids[slot] = oldIds[oldSlot];
+                size++;
+            }
+        }
+    }
+
+    /**
+     * @return true if both items have the same key.
+     */
+    public boolean hasSameKey(T first, T second) {
+        if (longKeyExtractor != null) {
+            return longKeyExtractor.getKey(first) == longKeyExtractor.getKey(second);
+        }
+        return equal(keyOf(first), keyOf(second));
+    }
+
+    /**
+     * @return number of items with an assigned id.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget all ids. Ids given later are still different from the forgotten ones.
+     */
+    public void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    private Object keyOf(T item) {
+        Object key = keyExtractor == null ? item : keyExtractor.getKey(item);
+        return key == null ? NULL_KEY : key;
+    }
+
+    /**
+     * @return slot holding the key of the item, or the empty slot where it should be inserted.
+     */
+    private int find(Object[] table, long[] longTable, int tableMask, T item) {
+        if (longKeyExtractor != null) {
+            long key = longKeyExtractor.getKey(item);
+            int slot = hash(key) & tableMask;
+            while (table[slot] != null && longTable[slot] != key) {
+                slot = (slot + 1) & tableMask;
+            }
+            return slot;
+        }
+        Object key = keyOf(item);
+        int slot = hash(key) & tableMask;
+        while (table[slot] != null && !equal(table[slot], key)) {
+            slot = (slot + 1) & tableMask;
+        }
+        return slot;
+    }
+
+    private void put(int slot, T item, long id) {
+        if (longKeyExtractor != null) {
+            keys[slot] = LONG_KEY;
+            longKeys[slot] = longKeyExtractor.getKey(item);
+        } else {
+            keys[slot] = keyOf(item);
+        }
+        ids[slot] = id;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    private void removeAt(int slot) {
+        keys[slot] = null;
+        size--;
+        // shift back the following entries of the probe sequence, so lookups never stop at the hole
+        int hole = slot;
+        int next = (slot + 1) & mask;
+        while (keys[next] != null) {
+            int home = hashAt(keys, longKeys, next) & mask;
+            boolean reachable = hole <= next ? (hole < home && home <= next) : (hole < home || home <= next);
+            if (!reachable) {
+                keys[hole] = keys[next];
+                if (longKeys != null) longKeys[hole] = longKeys[next];
+                ids[hole] = ids[next];
+                keys[next] = null;
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        long[] oldLongKeys = longKeys;
+        long[] oldIds = ids;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            // keys are unique, the first empty slot is the one
+            int slot = hashAt(oldKeys, oldLongKeys, i) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            if (longKeys != null) longKeys[slot] = oldLongKeys[i];
+            ids[slot] = oldIds[i];
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        longKeys = longKeyExtractor == null ? null : new long[capacity];
+        ids = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int capacityFor(int count) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private int hashAt(Object[] table, long[] longTable, int slot) {
+        return longTable != null ? hash(longTable[slot]) : hash(table[slot]);
+    }
+
+    private int hash(Object key) {
+        return mix(keyExtractor == null ? System.identityHashCode(key) : key.hashCode());
+    }
+
+    private static int hash(long key) {
+        return mix((int) (key ^ (key >>> 32)));
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean equal(Object first, Object second) {
+        return first == second || (keyExtractor != null && first.equals(second));
+    }
+}
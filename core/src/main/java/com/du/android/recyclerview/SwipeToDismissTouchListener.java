@@ -41,10 +41,11 @@ import java.util.List;
  *          }
  *           @Override
  *          public void onDismiss(RecyclerView view, List<SwipeToDismissTouchListener.PendingDismissData> dismissData) {
+ *             adapter.beginBatch();
  *             for (SwipeToDismissTouchListener.PendingDismissData data : dismissData) {
  *                 adapter.removeItem(data.position);
- *                 adapter.notifyItemRemoved(data.position);
  *             }
+ *             adapter.commit();
  *          }
  *  });
  *
@@ -53,6 +54,10 @@ import java.util.List;
  */
 public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchListener {
 
+    private static final String TRACE_MOVE = "SwipeToDismissTouchListener move";
+    private static final String TRACE_RELEASE = "SwipeToDismissTouchListener release";
+    private static final String TRACE_DISMISS = "SwipeToDismissTouchListener dismiss";
+
     private final RecyclerView mRecyclerView;
     private int mSlop;
     private int mMinFlingVelocity;
@@ -74,6 +79,8 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
     private int mDismissCount = 0;
     private List<PendingDismissData> mPendingDismisses = new ArrayList<PendingDismissData>();
     private SwipeDirection mAllowedSwipeDirection = SwipeDirection.NONE;
+    private final GestureTracker mGestureTracker = new GestureTracker(GestureMetrics.GESTURE_SWIPE);
+    private ChangeJournal mChangeJournal;
 
 
     /**
@@ -97,6 +104,35 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
         mPaused = !enabled;
     }
 
+    /**
+     * Record the dismissals in a journal, written off the main thread. Items are identified by the stable
+     * ids of the adapter, positions of a {@link RecyclerArrayAdapter} are the ones in its backing list.
+     *
+     * @param changeJournal journal, null to stop recording.
+     */
+    public void setChangeJournal(ChangeJournal changeJournal) {
+        mChangeJournal = changeJournal;
+    }
+
+    /**
+     * Report the timings of each swipe, see {@link GestureMetrics}. Frames are only followed while a
+     * listener is set.
+     *
+     * @param listener listener, null to stop measuring.
+     */
+    public void setMetricsListener(GestureMetrics.Listener listener) {
+        mGestureTracker.setListener(listener);
+    }
+
+    /**
+     * Wrap the phases of a swipe in {@link android.support.v4.os.TraceCompat} sections, visible in systrace.
+     *
+     * @param traceEnabled true to add trace sections.
+     */
+    public void setTraceEnabled(boolean traceEnabled) {
+        mGestureTracker.setTraceEnabled(traceEnabled);
+    }
+
     @Override
     public void onRequestDisallowInterceptTouchEvent(boolean allow) {
 
@@ -176,6 +212,9 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
                 .alpha(1)
                 .setDuration(mAnimationTime)
                 .setListener(null);
+        if (mSwiping) {
+            postSettled(mSwipeView, mGestureTracker.onRelease());
+        }
         mVelocityTracker.recycle();
         mVelocityTracker = null;
         mTranslationX = 0;
@@ -189,6 +228,8 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
         if (mPaused || mVelocityTracker == null || mSwipeView == null) {
             return;
         }
+        mGestureTracker.beginSection(TRACE_RELEASE);
+        final int gestureId = mGestureTracker.onRelease();
         mSwipeView.setPressed(false);
         float deltaX = motionEvent.getRawX() - mDownX;
         mVelocityTracker.addMovement(motionEvent);
@@ -217,15 +258,19 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
             mSwipeView.animate()
                     .translationX(dismissRight ? mViewWidth : -mViewWidth)
                     .alpha(0)
-                    .setDuration(mAnimationTime);
+                    .setDuration(mAnimationTime)
+                    .setListener(null);
 
             //this is instead of unreliable onAnimationEnd callback
             swipeViewCopy.postDelayed(new Runnable() {
                 @Override
                 public void run() {
+                    mGestureTracker.beginSection(TRACE_DISMISS);
                     performDismiss(swipeViewCopy, pos, swipeDirection);
                     swipeViewCopy.setTranslationX(0);
 //                    swipeViewCopy.setAlpha(1);
+                    mGestureTracker.endSection();
+                    mGestureTracker.onSettled(gestureId);
 
                 }
             }, mAnimationTime + 100);
@@ -237,10 +282,25 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
                     .alpha(1)
                     .setDuration(mAnimationTime)
                     .setListener(null);
+            postSettled(mSwipeView, gestureId);
         }
 
 
         resetMotion();
+        mGestureTracker.endSection();
+    }
+
+    /**
+     * Report the swipe as settled when the view is back in place.
+     */
+    private void postSettled(View view, final int gestureId) {
+        if (gestureId == 0) return;
+        view.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                mGestureTracker.onSettled(gestureId);
+            }
+        }, mAnimationTime);
     }
 
     private boolean move(MotionEvent motionEvent) {
@@ -252,6 +312,9 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
         float deltaX = motionEvent.getRawX() - mDownX;
         float deltaY = motionEvent.getRawY() - mDownY;
         if (Math.abs(deltaX) > mSlop && Math.abs(deltaY) < Math.abs(deltaX) / 2) {
+            if (!mSwiping) {
+                mGestureTracker.onStart(mRecyclerView, System.nanoTime());
+            }
             mSwiping = true;
             mSwipingSlop = (deltaX > 0 ? mSlop : -mSlop);
             mSwipeView.setPressed(false);
@@ -268,16 +331,21 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
         }
 
         if (mSwiping) {
+            mGestureTracker.beginSection(TRACE_MOVE);
+            mGestureTracker.onMove(motionEvent);
             mTranslationX = deltaX;
             mSwipeView.setTranslationX(deltaX - mSwipingSlop);
             mSwipeView.setAlpha(Math.max(0f, Math.min(1f,
                     1f - 2f * Math.abs(deltaX) / mViewWidth)));
+            mGestureTracker.endSection();
             return true;
         }
         return false;
     }
 
     private void resetMotion() {
+        // a swipe reset before its release ends at once, a released one is already settling
+        mGestureTracker.onSettled(mGestureTracker.onRelease());
         if (mVelocityTracker != null) {
             mVelocityTracker.recycle();
             mVelocityTracker = null;
@@ -296,6 +364,16 @@ public class SwipeToDismissTouchListener implements RecyclerView.OnItemTouchList
         if (mDismissCount == 0) {
             Collections.sort(mPendingDismisses);
             List<PendingDismissData> dismissData = new ArrayList<PendingDismissData>(mPendingDismisses);
+            if (mChangeJournal != null) {
+                // in the order the callback removes them, from the last position
+                RecyclerView.Adapter adapter = mRecyclerView.getAdapter();
+                for (PendingDismissData data : dismissData) {
+                    int position = adapter instanceof RecyclerArrayAdapter
+                            ? ((RecyclerArrayAdapter<?, ?>) adapter).getSourcePosition(data.position)
+                            : data.position;
+                    mChangeJournal.recordDismiss(adapter.getItemId(data.position), position);
+                }
+            }
             mCallbacks.onDismiss(mRecyclerView, dismissData);
             mPendingDismisses.clear();
         }
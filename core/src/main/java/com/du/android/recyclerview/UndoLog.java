@@ -0,0 +1,269 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+
+package com.du.android.recyclerview;
+
+/**
+ * Bounded log of adapter operations for undo and redo, kept in a ring buffer: once full, the oldest
+ * operation is dropped. Each entry is enough to invert the operation, the position and removed items of
+ * a remove or the two positions of a move.
+ * <p/>
+ * Operations recorded within one group, for eg. one batch, are undone and redone together. The moves of
+ * one drag are coalesced into a single move from the start to the end position.
+ */
+final class UndoLog {
+
+    static final int TYPE_INSERT = 1;
+    static final int TYPE_REMOVE = 2;
+    static final int TYPE_MOVE = 3;
+
+    private final int[] types;
+    private final int[] positions;
+
+    /**
+     * Target position of moves.
+     */
+    private final int[] targets;
+
+    /**
+     * Inserted or removed items.
+     */
+    private final Object[][] items;
+
+    private final int[] groups;
+
+    /**
+     * Slot of the oldest entry.
+     */
+    private int start;
+
+    /**
+     * Number of entries, the first undoCount ones can be undone and the others redone.
+     */
+    private int size;
+    private int undoCount;
+
+    private int nextGroup;
+    private int openGroup = -1;
+    private int groupDepth;
+
+    /**
+     * Number of entries ever recorded, see {@link #mark()}.
+     */
+    private int recorded;
+
+    /**
+     * Set between {@link #beginDrag()} and {@link #endDrag()}; dragSlot is the move entry of the drag,
+     * -1 until its first move.
+     */
+    private boolean dragging;
+    private int dragSlot = -1;
+
+    /**
+     * @param capacity maximum number of entries.
+     */
+    UndoLog(int capacity) {
+        types = new int[capacity];
+        positions = new int[capacity];
+        targets = new int[capacity];
+        items = new Object[capacity][];
+        groups = new int[capacity];
+    }
+
+    /**
+     * Record the next operations in one group, until the matching {@link #endGroup()}. Groups nest: the
+     * operations of an inner group, for eg. a batch during a multi-item drag, go to the outer one.
+     *
+     * @return id of the open group.
+     */
+    int beginGroup() {
+        if (groupDepth++ == 0) {
+            openGroup = nextGroup++;
+        }
+        return openGroup;
+    }
+
+    void endGroup() {
+        if (groupDepth > 0 && --groupDepth == 0) {
+            openGroup = -1;
+        }
+    }
+
+    /**
+     * @return number of entries recorded so far, to tell that none were recorded since.
+     */
+    int mark() {
+        return recorded;
+    }
+
+    /**
+     * Drop the last entries, whose operations were reverted. Nothing is dropped unless they are the last
+     * entries recorded when the mark was taken, all of the given group and none undone: entries recorded
+     * since, for eg. by a batch nested in the group, depend on them.
+     *
+     * @param group id returned by {@link #beginGroup()}.
+     * @param mark  value of {@link #mark()} right after the entries were recorded.
+     * @param count number of entries to drop.
+     * @return true if the entries were dropped.
+     */
+    boolean discardGroup(int group, int mark, int count) {
+        if (recorded != mark || undoCount != size || undoCount < count) return false;
+        for (int i = 1; i <= count; i++) {
+            if (groups[slot(undoCount - i)] != group) return false;
+        }
+        for (int i = 0; i < count; i++) {
+            items[slot(--undoCount)] = null;
+            size--;
+        }
+        dragSlot = -1;
+        return true;
+    }
+
+    /**
+     * Coalesce the next moves of one item, until {@link #endDrag()}.
+     */
+    void beginDrag() {
+        dragging = true;
+        dragSlot = -1;
+    }
+
+    void endDrag() {
+        dragging = false;
+        dragSlot = -1;
+    }
+
+    void insert(int position, Object[] inserted) {
+        add(TYPE_INSERT, position, 0, inserted);
+    }
+
+    void remove(int position, Object[] removed) {
+        add(TYPE_REMOVE, position, 0, removed);
+    }
+
+    void move(int from, int to) {
+        int last = undoCount > 0 ? slot(undoCount - 1) : -1;
+        if (dragging && dragSlot != -1 && dragSlot == last && undoCount == size && targets[last] == from) {
+            targets[last] = to;
+            if (positions[last] == to) {
+                // dragged back to where it started
+                size--;
+                undoCount--;
+                dragSlot = -1;
+            }
+            return;
+        }
+        add(TYPE_MOVE, from, to, null);
+        if (dragging) {
+            dragSlot = slot(undoCount - 1);
+        }
+    }
+
+    boolean canUndo() {
+        return undoCount > 0;
+    }
+
+    boolean canRedo() {
+        return undoCount < size;
+    }
+
+    /**
+     * @return slot of the next entry to undo, to read with the getters.
+     */
+    int peekUndo() {
+        return slot(undoCount - 1);
+    }
+
+    /**
+     * @return slot of the next entry to undo, which becomes the next entry to redo.
+     */
+    int popUndo() {
+        endDrag();
+        return slot(--undoCount);
+    }
+
+    /**
+     * @return slot of the next entry to redo.
+     */
+    int peekRedo() {
+        return slot(undoCount);
+    }
+
+    /**
+     * @return slot of the next entry to redo, which becomes the next entry to undo.
+     */
+    int popRedo() {
+        endDrag();
+        return slot(undoCount++);
+    }
+
+    int getType(int slot) {
+        return types[slot];
+    }
+
+    int getPosition(int slot) {
+        return positions[slot];
+    }
+
+    int getTarget(int slot) {
+        return targets[slot];
+    }
+
+    Object[] getItems(int slot) {
+        return items[slot];
+    }
+
+    int getGroup(int slot) {
+        return groups[slot];
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            items[slot(i)] = null;
+        }
+        start = 0;
+        size = 0;
+        undoCount = 0;
+        dragSlot = -1;
+    }
+
+    private void add(int type, int position, int target, Object[] entryItems) {
+        // a new operation makes the undone ones impossible to redo
+        for (int i = undoCount; i < size; i++) {
+            items[slot(i)] = null;
+        }
+        size = undoCount;
+        if (size == types.length) {
+            items[start] = null;
+            start = slot(1);
+            size--;
+            undoCount--;
+        }
+        int slot = slot(size);
+        dragSlot = -1;
+        types[slot] = type;
+        positions[slot] = position;
+        targets[slot] = target;
+        items[slot] = entryItems;
+        groups[slot] = openGroup != -1 ? openGroup : nextGroup++;
+        size++;
+        undoCount++;
+        recorded++;
+    }
+
+    private int slot(int index) {
+        return (start + index) % types.length;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Records adapter update operations and merges adjacent ones into range operations, so a series of
+ * mutations reaches RecyclerView as the smallest possible set of notify calls.
+ * <p/>
+ * Positions are recorded as they are at the time of each operation, the same way RecyclerView expects
+ * them when notify calls are made one after another.
+ */
+final class UpdateBatch {
+
+    static final int TYPE_INSERT = 1;
+    static final int TYPE_REMOVE = 2;
+    static final int TYPE_CHANGE = 3;
+    static final int TYPE_MOVE = 4;
+
+    private int[] types = new int[8];
+    private int[] positions = new int[8];
+
+    /**
+     * Item count for range operations, target position for moves.
+     */
+    private int[] counts = new int[8];
+
+    /**
+     * Change flags of change operations, 0 for a full rebind.
+     */
+    private int[] changes = new int[8];
+
+    private int size;
+
+    void insert(int position, int count) {
+        if (count <= 0) return;
+        int last = size - 1;
+        if (last >= 0 && types[last] == TYPE_INSERT
+                && position >= positions[last] && position <= positions[last] + counts[last]) {
+            counts[last] += count;
+            return;
+        }
+        add(TYPE_INSERT, position, count, 0);
+    }
+
+    void remove(int position, int count) {
+        if (count <= 0) return;
+        int last = size - 1;
+        if (last >= 0) {
+            if (types[last] == TYPE_REMOVE
+                    && positions[last] >= position && positions[last] <= position + count) {
+                positions[last] = position;
+                counts[last] += count;
+                return;
+            }
+            if (types[last] == TYPE_INSERT
+                    && position >= positions[last] && position + count <= positions[last] + counts[last]) {
+                // items inserted and removed again within the batch were never seen by RecyclerView
+                counts[last] -= count;
+                if (counts[last] == 0) size--;
+                return;
+            }
+        }
+        add(TYPE_REMOVE, position, count, 0);
+    }
+
+    void change(int position, int count) {
+        change(position, count, 0);
+    }
+
+    /**
+     * @param flags changed fields, see {@link RecyclerArrayAdapter#refreshItem(int, int)}; 0 for a full
+     *              rebind.
+     */
+    void change(int position, int count, int flags) {
+        if (count <= 0) return;
+        int last = size - 1;
+        if (last >= 0) {
+            int lastStart = positions[last];
+            int lastEnd = lastStart + counts[last];
+            if (types[last] == TYPE_CHANGE && changes[last] == flags
+                    && position <= lastEnd && position + count >= lastStart) {
+                positions[last] = Math.min(lastStart, position);
+                counts[last] = Math.max(lastEnd, position + count) - positions[last];
+                return;
+            }
+            if (types[last] == TYPE_INSERT && position >= lastStart && position + count <= lastEnd) {
+                // new items are bound anyway
+                return;
+            }
+        }
+        add(TYPE_CHANGE, position, count, flags);
+    }
+
+    void move(int from, int to) {
+        if (from == to) return;
+        int last = size - 1;
+        if (last >= 0 && types[last] == TYPE_MOVE && counts[last] == from) {
+            // the same item keeps moving, report a single move from its original position
+            if (positions[last] == to) {
+                size--;
+            } else {
+                counts[last] = to;
+            }
+            return;
+        }
+        add(TYPE_MOVE, from, to, 0);
+    }
+
+    /**
+     * Record all operations of another batch after the operations of this one.
+     *
+     * @param other batch to copy.
+     */
+    void append(UpdateBatch other) {
+        for (int i = 0; i < other.size; i++) {
+            switch (other.types[i]) {
+                case TYPE_INSERT:
+                    insert(other.positions[i], other.counts[i]);
+                    break;
+                case TYPE_REMOVE:
+                    remove(other.positions[i], other.counts[i]);
+                    break;
+                case TYPE_CHANGE:
+                    change(other.positions[i], other.counts[i], other.changes[i]);
+                    break;
+                case TYPE_MOVE:
+                    move(other.positions[i], other.counts[i]);
+                    break;
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Send all recorded operations to the adapter and clear the batch.
+     *
+     * @param adapter adapter to notify.
+     */
+    void dispatch(RecyclerView.Adapter<?> adapter) {
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case TYPE_INSERT:
+                    adapter.notifyItemRangeInserted(positions[i], counts[i]);
+                    break;
+                case TYPE_REMOVE:
+                    adapter.notifyItemRangeRemoved(positions[i], counts[i]);
+                    break;
+                case TYPE_CHANGE:
+                    if (changes[i] == 0) {
+                        adapter.notifyItemRangeChanged(positions[i], counts[i]);
+                    } else {
+                        adapter.notifyItemRangeChanged(positions[i], counts[i], changes[i]);
+                    }
+                    break;
+                case TYPE_MOVE:
+                    adapter.notifyItemMoved(positions[i], counts[i]);
+                    break;
+            }
+        }
+        size = 0;
+    }
+
+    private void add(int type, int position, int count, int flags) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = grow(types, capacity);
+            positions = grow(positions, capacity);
+            counts = grow(counts, capacity);
+            changes = grow(changes, capacity);
+        }
+        types[size] = type;
+        positions[size] = position;
+        counts[size] = count;
+        changes[size] = flags;
+        size++;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] result = new int[capacity];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+}
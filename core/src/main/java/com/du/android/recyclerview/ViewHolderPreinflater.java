@@ -0,0 +1,220 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseIntArray;
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Creates view holders ahead of time, so the first scroll or drag does not inflate layouts on the main
+ * thread.
+ * <p/>
+ * Once the main thread is idle, the configured number of holders per view type is created with
+ * {@link RecyclerView.Adapter#createViewHolder(android.view.ViewGroup, int)} on a background thread and
+ * put into the {@link WarmViewPool} of the RecyclerView, which the app installs. Layouts that can not be inflated out of
+ * the main thread are inflated on it, one holder per idle time.
+ * <p/>
+ * In the background the parent given to the adapter is a detached layout, not the RecyclerView, and its
+ * context hands out a clone of the layout inflater, so inflating does not wait on the inflations of the
+ * main thread. onCreateViewHolder() should inflate with {@code LayoutInflater.from(parent.getContext())}
+ * and not read the parent otherwise; the RecyclerView converts the layout params once the holder is used.
+ * <p/>
+ * Use something like this:
+ * <pre>
+ * {@code
+ * recyclerView.setRecycledViewPool(new WarmViewPool());
+ * recyclerView.setAdapter(adapter);
+ * preinflater = new ViewHolderPreinflater(recyclerView, adapter)
+ *         .preinflate(TYPE_MESSAGE, 12)
+ *         .preinflate(TYPE_HEADER, 2);
+ * preinflater.start();
+ * ...
+ * Log.d(TAG, "warm hits " + preinflater.getPool().getWarmHits() + ", misses " + preinflater.getPool().getMisses());
+ * }
+ * </pre>
+ */
+public class ViewHolderPreinflater {
+
+    private static final String LOG_TAG = "ViewHolderPreinflater";
+
+    private final RecyclerView recyclerView;
+    private final RecyclerView.Adapter<?> adapter;
+    private final WarmViewPool pool;
+    private final SparseIntArray counts = new SparseIntArray();
+
+    private Executor executor = AdapterExecutors.background();
+    private boolean started;
+    private volatile boolean cancelled;
+
+    /**
+     * @param recyclerView list the holders are created for, using a {@link WarmViewPool}.
+     * @param adapter      adapter creating the holders.
+     * @throws IllegalStateException if the pool of the RecyclerView is not a WarmViewPool.
+     */
+    public ViewHolderPreinflater(RecyclerView recyclerView, RecyclerView.Adapter<?> adapter) {
+        this.recyclerView = recyclerView;
+        this.adapter = adapter;
+        this.pool = WarmViewPool.of(recyclerView);
+    }
+
+    /**
+     * Set the number of holders to create for a view type, the pool is enlarged to keep them if needed.
+     *
+     * @param viewType view type.
+     * @param count    number of holders.
+     * @return this.
+     */
+    public ViewHolderPreinflater preinflate(int viewType, int count) {
+        counts.put(viewType, count);
+        if (count > pool.getMaxRecycledViews(viewType)) {
+            pool.setMaxRecycledViews(viewType, count);
+        }
+        return this;
+    }
+
+    /**
+     * Set the executor creating the holders. By default the low priority thread shared by the adapters of
+     * this library is used.
+     *
+     * @param executor background executor.
+     * @return this.
+     */
+    public ViewHolderPreinflater setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Create the holders once the main thread is idle. Must be called on the main thread.
+     */
+    public void start() {
+        if (started) return;
+        started = true;
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                if (!cancelled) {
+                    inflateInBackground();
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Stop creating holders, the ones already in the pool are kept.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return pool receiving the holders, with the hit and miss counters.
+     */
+    public WarmViewPool getPool() {
+        return pool;
+    }
+
+    private void inflateInBackground() {
+        final ViewGroup parent = new FrameLayout(new InflaterContext(recyclerView.getContext()));
+        final int[] viewTypes = new int[counts.size()];
+        final int[] viewTypeCounts = new int[counts.size()];
+        for (int i = 0; i < viewTypes.length; i++) {
+            viewTypes[i] = counts.keyAt(i);
+            viewTypeCounts[i] = counts.valueAt(i);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < viewTypes.length && !cancelled; i++) {
+                    int viewType = viewTypes[i];
+                    List<RecyclerView.ViewHolder> holders = new ArrayList<RecyclerView.ViewHolder>();
+                    try {
+                        while (holders.size() < viewTypeCounts[i] && !cancelled) {
+                            holders.add(adapter.createViewHolder(parent, viewType));
+                        }
+                    } catch (RuntimeException e) {
+                        // for eg. a view creating a Handler, it needs the main thread
+                        Log.w(LOG_TAG, "Failed to inflate view type " + viewType + " in background", e);
+                        inflateWhenIdle(viewType, viewTypeCounts[i] - holders.size());
+                    }
+                    putInPool(holders);
+                }
+            }
+        });
+    }
+
+    private void putInPool(final List<RecyclerView.ViewHolder> holders) {
+        if (holders.isEmpty()) return;
+        AdapterExecutors.mainThread().post(new Runnable() {
+            @Override
+            public void run() {
+                if (cancelled) return;
+                for (int i = 0, n = holders.size(); i < n; i++) {
+                    pool.putWarmView(holders.get(i));
+                }
+            }
+        });
+    }
+
+    private void inflateWhenIdle(final int viewType, final int count) {
+        AdapterExecutors.mainThread().post(new Runnable() {
+            @Override
+            public void run() {
+                Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+                    private int remaining = count;
+
+                    @Override
+                    public boolean queueIdle() {
+                        if (cancelled) return false;
+                        pool.putWarmView(adapter.createViewHolder(recyclerView, viewType));
+                        return --remaining > 0;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Context of the detached parent, with its own layout inflater.
+     */
+    private static class InflaterContext extends ContextWrapper {
+
+        private final LayoutInflater inflater;
+
+        InflaterContext(Context base) {
+            super(base);
+            inflater = LayoutInflater.from(base).cloneInContext(this);
+        }
+
+        @Override
+        public Object getSystemService(String name) {
+            return LAYOUT_INFLATER_SERVICE.equals(name) ? inflater : super.getSystemService(name);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package com.du.android.recyclerview;
+
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * RecycledViewPool that tells apart view holders created ahead of time by {@link ViewHolderPreinflater},
+ * and counts how RecyclerView requests for a view holder were served:
+ * <ul>
+ * <li>warm hits: a pre-inflated holder was used.</li>
+ * <li>recycled hits: a holder of a recycled item was reused.</li>
+ * <li>misses: the pool was empty, the adapter created the holder on the main thread.</li>
+ * </ul>
+ * The app installs it, for eg. with {@code recyclerView.setRecycledViewPool(new WarmViewPool())}, and may
+ * share it between RecyclerViews like any pool; the classes of this library using it do not replace a pool.
+ * All methods must be called on the main thread.
+ */
+public class WarmViewPool extends RecyclerView.RecycledViewPool {
+
+    /**
+     * Pool size per view type of RecycledViewPool.
+     */
+    private static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+    /**
+     * Pre-inflated holders not used yet, weak so holders dropped by a full pool are not retained.
+     */
+    private final Set<RecyclerView.ViewHolder> warmHolders =
+            Collections.newSetFromMap(new WeakHashMap<RecyclerView.ViewHolder, Boolean>());
+
+    /**
+     * Pool size per view type, as set. RecycledViewPool does not expose it.
+     */
+    private final SparseIntArray maxRecycledViews = new SparseIntArray();
+
+    /**
+     * Set while {@link AdapterInstrumentation} is attached.
+     */
+    AdapterInstrumentation instrumentation;
+
+    private int warmHits;
+    private int recycledHits;
+    private int misses;
+
+    @Override
+    public RecyclerView.ViewHolder getRecycledView(int viewType) {
+        RecyclerView.ViewHolder holder = super.getRecycledView(viewType);
+        if (holder == null) {
+            misses++;
+            if (instrumentation != null) {
+                instrumentation.onPoolMiss(viewType);
+            }
+        } else if (warmHolders.remove(holder)) {
+            warmHits++;
+        } else {
+            recycledHits++;
+        }
+        return holder;
+    }
+
+    @Override
+    public void setMaxRecycledViews(int viewType, int max) {
+        super.setMaxRecycledViews(viewType, max);
+        maxRecycledViews.put(viewType, max);
+    }
+
+    /**
+     * @param viewType view type.
+     * @return pool size of the view type, the RecycledViewPool default if not set.
+     */
+    public int getMaxRecycledViews(int viewType) {
+        return maxRecycledViews.get(viewType, DEFAULT_MAX_RECYCLED_VIEWS);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        warmHolders.clear();
+    }
+
+    /**
+     * Add a holder created ahead of time.
+     *
+     * @param holder new view holder, not bound.
+     */
+    public void putWarmView(RecyclerView.ViewHolder holder) {
+        warmHolders.add(holder);
+        putRecycledView(holder);
+    }
+
+    /**
+     * @return number of requests served with a pre-inflated holder.
+     */
+    public int getWarmHits() {
+        return warmHits;
+    }
+
+    /**
+     * @return number of requests served with a recycled holder.
+     */
+    public int getRecycledHits() {
+        return recycledHits;
+    }
+
+    /**
+     * @return number of requests that led to a holder created on the main thread.
+     */
+    public int getMisses() {
+        return misses;
+    }
+
+    /**
+     * Reset the counters.
+     */
+    public void resetStats() {
+        warmHits = 0;
+        recycledHits = 0;
+        misses = 0;
+    }
+
+    /**
+     * @return the pool of the given RecyclerView.
+     * @throws IllegalStateException if it is not a WarmViewPool, which is not installed here as that would
+     *                               drop the holders and settings of the current pool, maybe shared.
+     */
+    static WarmViewPool of(RecyclerView recyclerView) {
+        RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        if (!(pool instanceof WarmViewPool)) {
+            throw new IllegalStateException("RecyclerView must use a WarmViewPool, set one with setRecycledViewPool()");
+        }
+        return (WarmViewPool) pool;
+    }
+}